@@ -1,12 +1,15 @@
 import express from "express";
 import cors from "cors";
 import quizRouter from "./routes/quizRoutes.js";
+import { compressJsonResponses } from "./utils/httpCompression.js";
 
 const createApp = () => {
   const app = express();
 
   app.use(cors());
+  // Request bodies sent with Content-Encoding: gzip or deflate are inflated by express.json().
   app.use(express.json({ limit: "1mb" }));
+  app.use(compressJsonResponses());
 
   app.get("/health", (_req, res) => {
     res.json({ status: "ok" });
@@ -43,6 +43,13 @@ const resultSchema = new mongoose.Schema(
     timestamp: {
       type: Date,
       default: () => new Date()
+    },
+    // Client-generated id for results uploaded in bulk, so a retried upload is not
+    // stored twice.
+    submissionId: {
+      type: String,
+      trim: true,
+      index: { unique: true, sparse: true }
     }
   },
   {
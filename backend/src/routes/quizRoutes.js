@@ -1,78 +1,229 @@
 import { Router } from "express";
+import mongoose from "mongoose";
 import Quiz from "../models/Quiz.js";
 import Result from "../models/Result.js";
-import { generateQuizQuestions } from "../services/geminiService.js";
+import { generateQuizQuestions, streamQuizQuestions } from "../services/geminiService.js";
+import { openNdjsonStream } from "../utils/httpCompression.js";
 
 const MIN_QUESTIONS = Number(process.env.QUIZ_MIN_QUESTIONS ?? 5);
 const MAX_QUESTIONS = Number(process.env.QUIZ_MAX_QUESTIONS ?? 10);
+const MAX_BATCH_SIZE = Number(process.env.QUIZ_MAX_BATCH ?? 10);
+const MAX_SUBMIT_BATCH_SIZE = Number(process.env.QUIZ_MAX_SUBMIT_BATCH ?? 100);
 const DIFFICULTY_LEVELS = ["easy", "medium", "hard"];
 
 const router = Router();
 
-router.post("/generate", async (req, res, next) => {
-  try {
-    const { topic, questionCount, difficulty } = req.body || {};
-    if (!topic || typeof topic !== "string" || !topic.trim()) {
-      return res.status(400).json({ error: "Topic is required" });
+const parseGenerateRequest = (body) => {
+  const { topic, questionCount, difficulty, part, parts } = body || {};
+  if (!topic || typeof topic !== "string" || !topic.trim()) {
+    return { error: "Topic is required" };
+  }
+
+  let finalCount;
+  if (questionCount === undefined || questionCount === null || questionCount === "") {
+    finalCount = MIN_QUESTIONS;
+  } else {
+    const numericCount = Number(questionCount);
+    if (!Number.isInteger(numericCount)) {
+      return { error: "questionCount must be an integer" };
     }
+    finalCount = numericCount;
+  }
+  if (finalCount < MIN_QUESTIONS || finalCount > MAX_QUESTIONS) {
+    return { error: `questionCount must be between ${MIN_QUESTIONS} and ${MAX_QUESTIONS}` };
+  }
 
-    let finalCount;
-    if (questionCount === undefined || questionCount === null || questionCount === "") {
-      finalCount = MIN_QUESTIONS;
-    } else {
-      const numericCount = Number(questionCount);
-      if (!Number.isInteger(numericCount)) {
-        return res.status(400).json({ error: "questionCount must be an integer" });
-      }
-      finalCount = numericCount;
+  const normalizedDifficulty = typeof difficulty === "string" ? difficulty.toLowerCase() : "medium";
+  if (!DIFFICULTY_LEVELS.includes(normalizedDifficulty)) {
+    return { error: `difficulty must be one of: ${DIFFICULTY_LEVELS.join(", ")}` };
+  }
+
+  // Clients assembling a larger quiz from several requests send part/parts so each
+  // chunk can be steered to different material.
+  let chunk = null;
+  if (part !== undefined || parts !== undefined) {
+    const numericPart = Number(part);
+    const numericParts = Number(parts);
+    if (!Number.isInteger(numericPart) || !Number.isInteger(numericParts) || numericPart < 1 || numericPart > numericParts) {
+      return { error: "part and parts must be integers with 1 <= part <= parts" };
     }
-    if (finalCount < MIN_QUESTIONS || finalCount > MAX_QUESTIONS) {
-      return res.status(400).json({ error: `questionCount must be between ${MIN_QUESTIONS} and ${MAX_QUESTIONS}` });
+    chunk = { part: numericPart, parts: numericParts };
+  }
+
+  return { topic: topic.trim(), questionCount: finalCount, difficulty: normalizedDifficulty, chunk };
+};
+
+const toClientQuestion = (question) => {
+  const answerIndex = question.options.findIndex((option) => option === question.correctAnswer);
+  if (answerIndex === -1) {
+    throw new Error("Stored quiz question is missing the correct answer in options");
+  }
+  return {
+    question: question.question,
+    options: question.options,
+    answerIndex
+  };
+};
+
+// Scores answers against a stored quiz; unanswered or out-of-range entries count as wrong.
+const scoreAnswers = (quiz, answers) => {
+  let correctCount = 0;
+  quiz.questions.forEach((question, index) => {
+    const selectedIndex = answers[index];
+    if (!Number.isInteger(selectedIndex) || selectedIndex < 0 || selectedIndex >= question.options.length) {
+      return;
     }
+    if (question.options[selectedIndex] === question.correctAnswer) {
+      correctCount += 1;
+    }
+  });
+  const total = quiz.questions.length;
+  return { score: Math.round((correctCount / total) * 100), correctCount, total };
+};
+
+const toQuizDocument = (request, generatedQuestions) => ({
+  topic: request.topic,
+  difficulty: request.difficulty,
+  questionCount: request.questionCount,
+  questions: generatedQuestions.map((q) => ({
+    question: q.question,
+    options: q.options,
+    correctAnswer: q.correctAnswer
+  }))
+});
+
+const toClientQuiz = (quiz) => ({
+  quizId: quiz._id,
+  topic: quiz.topic,
+  difficulty: quiz.difficulty,
+  questionCount: quiz.questionCount,
+  questions: quiz.questions.map(toClientQuestion),
+  createdAt: quiz.createdAt
+});
 
-    const normalizedDifficulty = typeof difficulty === "string" ? difficulty.toLowerCase() : "medium";
-    if (!DIFFICULTY_LEVELS.includes(normalizedDifficulty)) {
-      return res.status(400).json({ error: `difficulty must be one of: ${DIFFICULTY_LEVELS.join(", ")}` });
+router.post("/generate", async (req, res, next) => {
+  try {
+    const request = parseGenerateRequest(req.body);
+    if (request.error) {
+      return res.status(400).json({ error: request.error });
     }
 
-    const generatedQuestions = await generateQuizQuestions(topic.trim(), finalCount, normalizedDifficulty);
-
-    const quiz = await Quiz.create({
-      topic: topic.trim(),
-      difficulty: normalizedDifficulty,
-      questionCount: finalCount,
-      questions: generatedQuestions.map((q) => ({
-        question: q.question,
-        options: q.options,
-        correctAnswer: q.correctAnswer
-      }))
-    });
+    const generatedQuestions = await generateQuizQuestions(request.topic, request.questionCount, request.difficulty, request.chunk);
+
+    const quiz = await Quiz.create(toQuizDocument(request, generatedQuestions));
+
+    res.status(201).json(toClientQuiz(quiz));
+  } catch (error) {
+    next(error);
+  }
+});
+
+// Generates several quizzes in one round trip. Body: { quizzes: [{ topic, questionCount,
+// difficulty }, ...] }. Generation runs concurrently and all successful quizzes are saved
+// with a single insertMany. Results keep the request order; each is either
+// { quiz: {...} } (same shape as /generate) or { error: "message" }.
+router.post("/generate-batch", async (req, res, next) => {
+  try {
+    const { quizzes } = req.body || {};
+    if (!Array.isArray(quizzes) || quizzes.length === 0) {
+      return res.status(400).json({ error: "quizzes must be a non-empty array" });
+    }
+    if (quizzes.length > MAX_BATCH_SIZE) {
+      return res.status(400).json({ error: `A batch can contain at most ${MAX_BATCH_SIZE} quizzes` });
+    }
 
-    const questionsForClient = quiz.questions.map((question) => {
-      const answerIndex = question.options.findIndex((option) => option === question.correctAnswer);
-      if (answerIndex === -1) {
-        throw new Error("Stored quiz question is missing the correct answer in options");
+    const requests = quizzes.map(parseGenerateRequest);
+    const outcomes = await Promise.allSettled(requests.map(async (request) => {
+      if (request.error) {
+        throw new Error(request.error);
+      }
+      return generateQuizQuestions(request.topic, request.questionCount, request.difficulty, request.chunk);
+    }));
+
+    const generatedIndexes = [];
+    const documents = [];
+    outcomes.forEach((outcome, index) => {
+      if (outcome.status === "fulfilled") {
+        generatedIndexes.push(index);
+        documents.push(toQuizDocument(requests[index], outcome.value));
       }
-      return {
-        question: question.question,
-        options: question.options,
-        answerIndex
-      };
     });
+    const savedQuizzes = documents.length > 0 ? await Quiz.insertMany(documents) : [];
 
-    res.status(201).json({
-      quizId: quiz._id,
-      topic: quiz.topic,
-      difficulty: quiz.difficulty,
-      questionCount: quiz.questionCount,
-      questions: questionsForClient,
-      createdAt: quiz.createdAt
+    const results = outcomes.map((outcome) => (
+      outcome.status === "rejected" ? { error: outcome.reason?.message || "Quiz generation failed" } : null
+    ));
+    savedQuizzes.forEach((quiz, position) => {
+      results[generatedIndexes[position]] = { quiz: toClientQuiz(quiz) };
     });
+
+    res.status(201).json({ results });
   } catch (error) {
     next(error);
   }
 });
 
+// Streams the quiz as newline-delimited JSON so clients can show the first question
+// while the rest are still being generated. Each line is one of:
+//   {"question":{"question":"...","options":[...],"answerIndex":1}}
+//   {"done":{"quizId":"...","topic":"...","difficulty":"...","questionCount":5,"createdAt":"..."}}
+//   {"error":"message"}
+// "done" is only sent once the quiz has been saved; an error can follow any number of
+// questions.
+router.post("/generate-stream", async (req, res, next) => {
+  const request = parseGenerateRequest(req.body);
+  if (request.error) {
+    return res.status(400).json({ error: request.error });
+  }
+
+  let clientGone = false;
+  res.on("close", () => {
+    clientGone = !res.writableFinished;
+  });
+
+  const questions = [];
+  let stream = null;
+  try {
+    const generated = streamQuizQuestions(request.topic, request.questionCount, request.difficulty);
+    for await (const question of generated) {
+      if (clientGone) {
+        // Leaving the loop closes the generator and stops reading from Gemini.
+        return;
+      }
+      if (!stream) {
+        stream = openNdjsonStream(req, res);
+      }
+      questions.push(question);
+      stream.write({
+        question: {
+          question: question.question,
+          options: question.options,
+          answerIndex: question.correctAnswerIndex
+        }
+      });
+    }
+
+    const quiz = await Quiz.create(toQuizDocument(request, questions));
+
+    stream.end({
+      done: {
+        quizId: quiz._id,
+        topic: quiz.topic,
+        difficulty: quiz.difficulty,
+        questionCount: quiz.questionCount,
+        createdAt: quiz.createdAt
+      }
+    });
+  } catch (error) {
+    if (!stream) {
+      return next(error);
+    }
+    // eslint-disable-next-line no-console
+    console.error(error);
+    stream.end({ error: error.message || "Internal server error" });
+  }
+});
+
 router.post("/submit", async (req, res, next) => {
   try {
     const { quizId, answers, user } = req.body || {};
@@ -97,19 +248,7 @@ router.post("/submit", async (req, res, next) => {
       question.options.findIndex((option) => option === question.correctAnswer)
     );
 
-    let correctCount = 0;
-    quiz.questions.forEach((question, index) => {
-      const selectedIndex = answers[index];
-      if (!Number.isInteger(selectedIndex) || selectedIndex < 0 || selectedIndex >= question.options.length) {
-        return;
-      }
-      const selectedOption = question.options[selectedIndex];
-      if (selectedOption === question.correctAnswer) {
-        correctCount += 1;
-      }
-    });
-
-    const score = Math.round((correctCount / total) * 100);
+    const { score, correctCount } = scoreAnswers(quiz, answers);
 
     const resultDocument = await Result.create({
       user: user || undefined,
@@ -134,4 +273,82 @@ router.post("/submit", async (req, res, next) => {
   }
 });
 
+// Stores many results in one round trip. Body: { submissions: [{ submissionId, quizId,
+// answers, user, submittedAt }, ...] }. Each entry is scored like /submit and all new
+// results are written with a single insertMany. Entries whose submissionId is already
+// stored are reported as stored again, so clients can safely retry an upload whose
+// response was lost. Results keep the request order; each is either
+// { resultId, score, correctCount, total } or { error: "message" }.
+router.post("/submit-batch", async (req, res, next) => {
+  try {
+    const { submissions } = req.body || {};
+    if (!Array.isArray(submissions) || submissions.length === 0) {
+      return res.status(400).json({ error: "submissions must be a non-empty array" });
+    }
+    if (submissions.length > MAX_SUBMIT_BATCH_SIZE) {
+      return res.status(400).json({ error: `A batch can contain at most ${MAX_SUBMIT_BATCH_SIZE} submissions` });
+    }
+
+    const validQuizIds = submissions
+      .map((submission) => submission?.quizId)
+      .filter((quizId) => typeof quizId === "string" && mongoose.isValidObjectId(quizId));
+    const submissionIds = submissions
+      .map((submission) => submission?.submissionId)
+      .filter((submissionId) => typeof submissionId === "string" && submissionId);
+    const [quizzes, existing] = await Promise.all([
+      Quiz.find({ _id: { $in: validQuizIds } }),
+      submissionIds.length > 0 ? Result.find({ submissionId: { $in: submissionIds } }) : []
+    ]);
+    const quizzesById = new Map(quizzes.map((quiz) => [String(quiz._id), quiz]));
+    const existingBySubmission = new Map(existing.map((result) => [result.submissionId, result]));
+
+    const results = [];
+    const documents = [];
+    const documentIndexes = [];
+    submissions.forEach((submission, index) => {
+      const { submissionId, quizId, answers, user, submittedAt } = submission || {};
+      const stored = submissionId ? existingBySubmission.get(submissionId) : null;
+      if (stored) {
+        results[index] = { resultId: stored._id, score: stored.score, correctCount: stored.correctCount, total: stored.total };
+        return;
+      }
+      const quiz = quizzesById.get(String(quizId));
+      if (!quiz) {
+        results[index] = { error: quizId ? "Quiz not found" : "quizId is required" };
+        return;
+      }
+      if (!Array.isArray(answers) || answers.length !== quiz.questions.length) {
+        results[index] = { error: `answers array must contain ${quiz.questions.length} items` };
+        return;
+      }
+      const timestamp = new Date(submittedAt);
+      documentIndexes.push(index);
+      documents.push({
+        user: user || undefined,
+        submissionId: submissionId || undefined,
+        quizId: quiz._id,
+        topic: quiz.topic,
+        difficulty: quiz.difficulty,
+        ...scoreAnswers(quiz, answers),
+        answers,
+        timestamp: Number.isNaN(timestamp.getTime()) ? undefined : timestamp
+      });
+    });
+
+    const saved = documents.length > 0 ? await Result.insertMany(documents) : [];
+    saved.forEach((result, position) => {
+      results[documentIndexes[position]] = {
+        resultId: result._id,
+        score: result.score,
+        correctCount: result.correctCount,
+        total: result.total
+      };
+    });
+
+    res.status(201).json({ results });
+  } catch (error) {
+    next(error);
+  }
+});
+
 export default router;
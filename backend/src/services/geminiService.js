@@ -14,16 +14,32 @@ if (GEMINI_API_KEY) {
   generativeModel = genAI.getGenerativeModel({ model: GEMINI_MODEL });
 }
 
-const quizPrompt = (topic, questionCount, difficulty) => `
+// Steers one chunk of a larger quiz towards its own slice of the topic so the chunks,
+// generated independently and in parallel, repeat each other as little as possible.
+const chunkInstruction = (chunk) => (chunk && chunk.parts > 1
+  ? `- This is part ${chunk.part} of ${chunk.parts} of a longer quiz on this topic. Divide the topic into ${chunk.parts} distinct areas and only ask about area ${chunk.part}.\n`
+  : "");
+
+const quizPrompt = (topic, questionCount, difficulty, chunk) => `
 Generate a multiple-choice quiz about "${topic}".
 - The quiz must contain exactly ${questionCount} questions.
 - Overall difficulty should be ${difficulty}.
-- Each question must include exactly 4 answer options.
+${chunkInstruction(chunk)}- Each question must include exactly 4 answer options.
 - Provide the index (0-based) of the correct option as "correctAnswerIndex".
 - Respond strictly as minified JSON: { "questions": [ { "question": "...", "options": ["...","...","...","..."], "correctAnswerIndex": 1 }, ... ] }
 `;
 
-export const generateQuizQuestions = async (topic, questionCount = MIN_QUESTIONS, difficulty = "medium") => {
+const streamPrompt = (topic, questionCount, difficulty) => `
+Generate a multiple-choice quiz about "${topic}".
+- The quiz must contain exactly ${questionCount} questions.
+- Overall difficulty should be ${difficulty}.
+- Each question must include exactly 4 answer options.
+- Provide the index (0-based) of the correct option as "correctAnswerIndex".
+- Respond as newline-delimited JSON: one minified question object per line, no surrounding array, no code fences.
+- Each line must look like: { "question": "...", "options": ["...","...","...","..."], "correctAnswerIndex": 1 }
+`;
+
+const validateRequest = (topic, questionCount, difficulty) => {
   if (!topic || !topic.trim()) {
     throw new Error("Topic is required to generate a quiz");
   }
@@ -31,7 +47,6 @@ export const generateQuizQuestions = async (topic, questionCount = MIN_QUESTIONS
     throw new Error("GEMINI_API_KEY is not configured");
   }
 
-  const sanitizedTopic = topic.trim();
   const desiredCount = Number(questionCount);
   if (!Number.isInteger(desiredCount) || desiredCount < MIN_QUESTIONS || desiredCount > MAX_QUESTIONS) {
     throw new Error(`questionCount must be an integer between ${MIN_QUESTIONS} and ${MAX_QUESTIONS}`);
@@ -42,8 +57,40 @@ export const generateQuizQuestions = async (topic, questionCount = MIN_QUESTIONS
     throw new Error(`difficulty must be one of: ${DIFFICULTY_LEVELS.join(", ")}`);
   }
 
+  return { sanitizedTopic: topic.trim(), desiredCount, normalizedDifficulty };
+};
+
+const normalizeQuestion = (question, index) => {
+  if (
+    !question ||
+    typeof question.question !== "string" ||
+    !Array.isArray(question.options) ||
+    question.options.length !== 4
+  ) {
+    throw new Error(`Question ${index + 1} is missing required fields`);
+  }
+
+  const correctAnswerIndex = Number(question.correctAnswerIndex);
+  if (!Number.isInteger(correctAnswerIndex) || correctAnswerIndex < 0 || correctAnswerIndex >= question.options.length) {
+    throw new Error(`Question ${index + 1} has an invalid correctAnswerIndex`);
+  }
+
+  const options = question.options.map((option) => String(option).trim());
+  const correctAnswer = options[correctAnswerIndex];
+
+  return {
+    question: question.question.trim(),
+    options,
+    correctAnswer,
+    correctAnswerIndex
+  };
+};
+
+export const generateQuizQuestions = async (topic, questionCount = MIN_QUESTIONS, difficulty = "medium", chunk = null) => {
+  const { sanitizedTopic, desiredCount, normalizedDifficulty } = validateRequest(topic, questionCount, difficulty);
+
   const response = await generativeModel.generateContent(
-    quizPrompt(sanitizedTopic, desiredCount, normalizedDifficulty)
+    quizPrompt(sanitizedTopic, desiredCount, normalizedDifficulty, chunk)
   );
   const text = response.response.text();
   const jsonPayload = extractJsonFromResponse(text);
@@ -57,29 +104,61 @@ export const generateQuizQuestions = async (topic, questionCount = MIN_QUESTIONS
 
   const questions = ensureArrayLength(parsed.questions, desiredCount, desiredCount);
 
-  return questions.map((question, index) => {
-    if (
-      !question ||
-      typeof question.question !== "string" ||
-      !Array.isArray(question.options) ||
-      question.options.length !== 4
-    ) {
-      throw new Error(`Question ${index + 1} is missing required fields`);
-    }
+  return questions.map(normalizeQuestion);
+};
+
+/**
+ * Yields validated questions one at a time while Gemini is still generating the rest.
+ * The model is asked for one JSON object per line, so each complete line can be
+ * parsed as soon as it arrives.
+ */
+export async function* streamQuizQuestions(topic, questionCount = MIN_QUESTIONS, difficulty = "medium") {
+  const { sanitizedTopic, desiredCount, normalizedDifficulty } = validateRequest(topic, questionCount, difficulty);
+
+  const response = await generativeModel.generateContentStream(
+    streamPrompt(sanitizedTopic, desiredCount, normalizedDifficulty)
+  );
 
-    const correctAnswerIndex = Number(question.correctAnswerIndex);
-    if (!Number.isInteger(correctAnswerIndex) || correctAnswerIndex < 0 || correctAnswerIndex >= question.options.length) {
-      throw new Error(`Question ${index + 1} has an invalid correctAnswerIndex`);
+  let pending = "";
+  let produced = 0;
+
+  const parseLine = (line) => {
+    const trimmed = line.trim();
+    if (!trimmed || trimmed.startsWith("```")) {
+      return null;
+    }
+    let parsed;
+    try {
+      parsed = JSON.parse(trimmed.replace(/,$/, ""));
+    } catch (error) {
+      throw new Error("Gemini response was not valid JSON");
     }
+    return normalizeQuestion(parsed, produced);
+  };
 
-    const options = question.options.map((option) => String(option).trim());
-    const correctAnswer = options[correctAnswerIndex];
+  for await (const chunk of response.stream) {
+    pending += chunk.text();
+    let newline = pending.indexOf("\n");
+    while (newline !== -1) {
+      const question = parseLine(pending.slice(0, newline));
+      pending = pending.slice(newline + 1);
+      if (question) {
+        produced += 1;
+        yield question;
+        if (produced === desiredCount) {
+          return;
+        }
+      }
+      newline = pending.indexOf("\n");
+    }
+  }
 
-    return {
-      question: question.question.trim(),
-      options,
-      correctAnswer,
-      correctAnswerIndex
-    };
-  });
-};
+  const last = parseLine(pending);
+  if (last) {
+    produced += 1;
+    yield last;
+  }
+  if (produced !== desiredCount) {
+    throw new Error(`Expected ${desiredCount} questions, received ${produced}`);
+  }
+}
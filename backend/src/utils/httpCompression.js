@@ -0,0 +1,84 @@
+import zlib from "node:zlib";
+
+const MIN_COMPRESS_BYTES = Number(process.env.COMPRESSION_MIN_BYTES ?? 1024);
+
+// Picks gzip or deflate from the Accept-Encoding header, honouring q=0 exclusions.
+export const negotiateEncoding = (req) => {
+  const accepted = new Set();
+  String(req.headers["accept-encoding"] || "")
+    .split(",")
+    .forEach((entry) => {
+      const [name, ...params] = entry.trim().toLowerCase().split(";");
+      const quality = params.map((param) => param.trim()).find((param) => param.startsWith("q="));
+      if (name && !(quality && Number(quality.slice(2)) === 0)) {
+        accepted.add(name);
+      }
+    });
+  if (accepted.has("gzip")) {
+    return "gzip";
+  }
+  if (accepted.has("deflate")) {
+    return "deflate";
+  }
+  return null;
+};
+
+// Compresses res.json() bodies above COMPRESSION_MIN_BYTES for clients that accept it.
+export const compressJsonResponses = () => (req, res, next) => {
+  res.vary("Accept-Encoding");
+  const encoding = negotiateEncoding(req);
+  if (!encoding) {
+    return next();
+  }
+
+  const sendJson = res.json.bind(res);
+  res.json = (body) => {
+    const payload = Buffer.from(JSON.stringify(body));
+    if (payload.length < MIN_COMPRESS_BYTES) {
+      return sendJson(body);
+    }
+    const compress = encoding === "gzip" ? zlib.gzip : zlib.deflate;
+    compress(payload, (error, compressed) => {
+      if (error) {
+        sendJson(body);
+        return;
+      }
+      res.setHeader("Content-Encoding", encoding);
+      res.type("application/json");
+      res.send(compressed);
+    });
+    return res;
+  };
+  next();
+};
+
+// Starts an NDJSON response. When compressed, every line is sync-flushed so the client
+// can decode it immediately instead of waiting for the compressor's buffer to fill.
+export const openNdjsonStream = (req, res, status = 200) => {
+  res.status(status);
+  res.setHeader("Content-Type", "application/x-ndjson; charset=utf-8");
+  res.setHeader("Cache-Control", "no-cache");
+  res.vary("Accept-Encoding");
+
+  const encoding = negotiateEncoding(req);
+  if (!encoding) {
+    res.flushHeaders();
+    return {
+      write: (value) => res.write(`${JSON.stringify(value)}\n`),
+      end: (value) => res.end(`${JSON.stringify(value)}\n`)
+    };
+  }
+
+  res.setHeader("Content-Encoding", encoding);
+  res.flushHeaders();
+  const compressor = encoding === "gzip" ? zlib.createGzip() : zlib.createDeflate();
+  compressor.pipe(res);
+  res.on("close", () => compressor.destroy());
+  return {
+    write: (value) => {
+      compressor.write(`${JSON.stringify(value)}\n`);
+      compressor.flush(zlib.constants.Z_SYNC_FLUSH);
+    },
+    end: (value) => compressor.end(`${JSON.stringify(value)}\n`)
+  };
+};
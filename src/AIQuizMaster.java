@@ -19,7 +19,6 @@ import javax.swing.JTextField;
 import javax.swing.ListSelectionModel;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
-import javax.swing.SwingWorker;
 import javax.swing.UIManager;
 import java.awt.CardLayout;
 import java.awt.Color;
@@ -33,7 +32,8 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class AIQuizMaster extends JFrame {
 
@@ -42,8 +42,12 @@ public class AIQuizMaster extends JFrame {
     private static final String CARD_QUIZ = "QUIZ";
     private static final String CARD_RESULTS = "RESULTS";
     private static final String CARD_HISTORY = "HISTORY";
-    private static final Integer[] QUESTION_COUNT_OPTIONS = {5, 6, 7, 8, 9, 10};
+    // Counts above 10 are assembled from several backend requests by QuizService.
+    private static final Integer[] QUESTION_COUNT_OPTIONS = {5, 6, 7, 8, 9, 10, 25, 50, 100, 150, 200};
     private static final String[] DIFFICULTY_OPTIONS = {"Easy", "Medium", "Hard"};
+    private static final int HISTORY_PAGE_SIZE = 50;
+    private static final int STATS_TOOLTIP_ROWS = 5;
+    private static final boolean WARM_UP_ENABLED = ClientSettings.booleanValue("warmup.enabled", true);
     private static final Color PRIMARY_COLOR = new Color(45, 99, 179);
     private static final Color ACCENT_COLOR = new Color(96, 154, 219);
     private static final Color BACKGROUND_COLOR = new Color(245, 247, 252);
@@ -60,6 +64,8 @@ public class AIQuizMaster extends JFrame {
     private final QuizService quizService = new QuizService();
     private final UserStorage userStorage = new UserStorage();
     private final QuizHistoryStore historyStore = new QuizHistoryStore();
+    private final QuizPrefetcher prefetcher = QuizPrefetcher.fromSettings(quizService, historyStore);
+    private final ResultUploader resultUploader = ResultUploader.fromSettings(quizService);
     private final CardLayout cardLayout = new CardLayout();
     private final JPanel cardContainer = new JPanel(cardLayout);
     private final LoginPanel loginPanel = new LoginPanel();
@@ -68,6 +74,9 @@ public class AIQuizMaster extends JFrame {
     private final QuizPanel quizPanel = new QuizPanel();
     private final ResultPanel resultPanel = new ResultPanel();
     private String currentUser;
+    private CompletableFuture<QuizService.QuizData> pendingQuiz;
+    private long quizRequest;
+    private boolean streamStarted;
 
     public AIQuizMaster() {
         super("AI QuizMaster");
@@ -86,6 +95,8 @@ public class AIQuizMaster extends JFrame {
 
         setContentPane(cardContainer);
         cardLayout.show(cardContainer, CARD_LOGIN);
+        // EXIT_ON_CLOSE ends the JVM; results still queued for the history file are written first.
+        Runtime.getRuntime().addShutdownHook(new Thread(historyStore::close, "history-flush"));
     }
 
     private void requestQuiz(String topic, int questionCount, String difficulty) {
@@ -94,8 +105,67 @@ public class AIQuizMaster extends JFrame {
             cardLayout.show(cardContainer, CARD_LOGIN);
             return;
         }
+        QuizService.QuizKey key = new QuizService.QuizKey(topic, questionCount, difficulty);
+        QuizService.QuizData ready = prefetcher.take(key);
+        if (ready != null) {
+            startQuiz(ready);
+            return;
+        }
         homePanel.setLoading(true);
-        new QuizFetchWorker(topic, questionCount, difficulty).execute();
+        long request = ++quizRequest;
+        streamStarted = false;
+        CompletableFuture<QuizService.QuizData> future = quizService.streamQuizAsync(topic, questionCount, difficulty,
+                question -> SwingUtilities.invokeLater(() -> onQuestionStreamed(request, key, question)));
+        pendingQuiz = future;
+        future.whenComplete((quizData, failure) ->
+                SwingUtilities.invokeLater(() -> onQuizFetched(request, quizData, failure)));
+    }
+
+    private void onQuestionStreamed(long request, QuizService.QuizKey key, QuizQuestion question) {
+        if (request != quizRequest || pendingQuiz == null) {
+            return;
+        }
+        if (streamStarted) {
+            quizPanel.appendQuestion(question);
+            return;
+        }
+        // Let the user start on the first question while the rest are generated.
+        streamStarted = true;
+        homePanel.setLoading(false);
+        quizPanel.beginStreaming(key.getTopic(), key.getDifficulty(), key.getQuestionCount(), question);
+        cardLayout.show(cardContainer, CARD_QUIZ);
+    }
+
+    private void onQuizFetched(long request, QuizService.QuizData quizData, Throwable failure) {
+        if (request != quizRequest || pendingQuiz == null) {
+            // Cancelled or superseded while the request was in flight.
+            return;
+        }
+        pendingQuiz = null;
+        homePanel.setLoading(false);
+        if (failure == null) {
+            if (streamStarted) {
+                quizPanel.completeStreaming(quizData);
+            } else {
+                startQuiz(quizData);
+            }
+            return;
+        }
+        if (streamStarted) {
+            // A partially streamed quiz cannot be submitted.
+            returnHome();
+        }
+        String message = QuizService.asServiceException(failure).getMessage();
+        homePanel.showError(message != null ? message : "Failed to generate quiz.");
+    }
+
+    private void cancelPendingQuiz() {
+        CompletableFuture<QuizService.QuizData> future = pendingQuiz;
+        pendingQuiz = null;
+        quizRequest++;
+        if (future != null) {
+            future.cancel(true);
+        }
     }
 
     private void startQuiz(QuizService.QuizData quizData) {
@@ -116,7 +186,9 @@ public class AIQuizMaster extends JFrame {
                     totalQuestions,
                     scorePercent
             );
+            resultUploader.submit(currentUser, quizData.getQuizId(), selections);
             historyPanel.refresh();
+            prefetcher.startFor(currentUser);
         }
         cardLayout.show(cardContainer, CARD_RESULTS);
     }
@@ -136,10 +208,21 @@ public class AIQuizMaster extends JFrame {
         this.currentUser = username;
         homePanel.updateUser(username);
         historyPanel.refresh();
+        if (WARM_UP_ENABLED) {
+            quizService.warmUpAsync().thenAccept(report -> SwingUtilities.invokeLater(() -> {
+                if (username.equals(currentUser)) {
+                    homePanel.showWarmUp(report);
+                }
+            }));
+        }
+        prefetcher.startFor(username);
+        resultUploader.start();
         returnHome();
     }
 
     private void logoutCurrentUser() {
+        cancelPendingQuiz();
+        prefetcher.stop();
         this.currentUser = null;
         homePanel.updateUser(null);
         quizPanel.reset();
@@ -148,39 +231,6 @@ public class AIQuizMaster extends JFrame {
         cardLayout.show(cardContainer, CARD_LOGIN);
     }
 
-    private final class QuizFetchWorker extends SwingWorker<QuizService.QuizData, Void> {
-
-        private final String topic;
-        private final int questionCount;
-        private final String difficulty;
-
-        QuizFetchWorker(String topic, int questionCount, String difficulty) {
-            this.topic = topic;
-            this.questionCount = questionCount;
-            this.difficulty = difficulty;
-        }
-
-        @Override
-        protected QuizService.QuizData doInBackground() throws Exception {
-            return quizService.requestQuiz(topic, questionCount, difficulty);
-        }
-
-        @Override
-        protected void done() {
-            homePanel.setLoading(false);
-            try {
-                QuizService.QuizData quizData = get();
-                startQuiz(quizData);
-            } catch (InterruptedException ex) {
-                Thread.currentThread().interrupt();
-                homePanel.showError("Quiz generation interrupted.");
-            } catch (ExecutionException ex) {
-                String message = ex.getCause() != null ? ex.getCause().getMessage() : ex.getMessage();
-                homePanel.showError(message != null ? message : "Failed to generate quiz.");
-            }
-        }
-    }
-
     private final class LoginPanel extends JPanel {
         private final JTextField usernameField = new JTextField();
         private final JPasswordField passwordField = new JPasswordField();
@@ -415,7 +465,7 @@ public class AIQuizMaster extends JFrame {
 
             JLabel tipsLabel = new JLabel(
                     "<html><div style='text-align:center;color:#63748a;'>"
-                            + "Quizzes are generated by the Gemini API, so every request gives you fresh questions."
+                            + "Quizzes are generated by the Gemini API. Repeating a recent request reuses its quiz instantly."
                             + "</div></html>",
                     SwingConstants.CENTER);
             tipsLabel.setAlignmentX(CENTER_ALIGNMENT);
@@ -538,6 +588,7 @@ public class AIQuizMaster extends JFrame {
         }
 
         void updateUser(String username) {
+            userLabel.setToolTipText(null);
             if (username == null || username.isBlank()) {
                 userLabel.setText("Not signed in.");
                 historyButton.setEnabled(false);
@@ -548,12 +599,20 @@ public class AIQuizMaster extends JFrame {
                 logoutButton.setEnabled(true);
             }
         }
+
+        void showWarmUp(QuizService.WarmUpReport report) {
+            userLabel.setToolTipText(report.toString());
+        }
     }
 
     private final class HistoryPanel extends JPanel {
         private final DefaultListModel<String> historyModel = new DefaultListModel<>();
         private final JList<String> historyList = new JList<>(historyModel);
         private final JButton backButton = new JButton("Back to Home");
+        private final JButton olderButton = new JButton("Show Older");
+        private final JLabel statsLabel = new JLabel(" ", SwingConstants.CENTER);
+        private long nextCursor = -1;
+        private long refreshRequest;
 
         HistoryPanel() {
             setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
@@ -573,6 +632,9 @@ public class AIQuizMaster extends JFrame {
             subtitle.setForeground(MUTED_TEXT_COLOR);
             subtitle.setAlignmentX(CENTER_ALIGNMENT);
 
+            statsLabel.setFont(statsLabel.getFont().deriveFont(13f));
+            statsLabel.setAlignmentX(CENTER_ALIGNMENT);
+
             historyList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
             historyList.setVisibleRowCount(10);
             historyList.setFont(historyList.getFont().deriveFont(14f));
@@ -587,11 +649,20 @@ public class AIQuizMaster extends JFrame {
             backButton.setAlignmentX(CENTER_ALIGNMENT);
             backButton.addActionListener(e -> cardLayout.show(cardContainer, CARD_HOME));
 
+            styleSecondaryButton(olderButton);
+            olderButton.setAlignmentX(CENTER_ALIGNMENT);
+            olderButton.addActionListener(e -> showPage(nextCursor));
+            olderButton.setVisible(false);
+
             card.add(title);
             card.add(Box.createRigidArea(new Dimension(0, 8)));
             card.add(subtitle);
-            card.add(Box.createRigidArea(new Dimension(0, 24)));
+            card.add(Box.createRigidArea(new Dimension(0, 16)));
+            card.add(statsLabel);
+            card.add(Box.createRigidArea(new Dimension(0, 16)));
             card.add(scrollPane);
+            card.add(Box.createRigidArea(new Dimension(0, 12)));
+            card.add(olderButton);
             card.add(Box.createRigidArea(new Dimension(0, 18)));
             card.add(backButton);
 
@@ -602,16 +673,39 @@ public class AIQuizMaster extends JFrame {
 
         void refresh() {
             historyModel.clear();
+            olderButton.setVisible(false);
+            statsLabel.setText(" ");
+            statsLabel.setToolTipText(null);
+            long request = ++refreshRequest;
             if (currentUser == null) {
                 historyModel.addElement("Sign in to view your quiz history.");
                 return;
             }
-            List<QuizHistoryStore.QuizRecord> records = historyStore.loadForUser(currentUser);
-            if (records.isEmpty()) {
+            if (!historyStore.whenOpen().isDone()) {
+                historyModel.addElement("Loading quiz history...");
+            }
+            // The store opens on its own thread; reading it before then would block the EDT.
+            historyStore.whenOpen().thenRun(() -> SwingUtilities.invokeLater(() -> showHistory(request)));
+        }
+
+        private void showHistory(long request) {
+            if (request != refreshRequest || currentUser == null) {
+                return;
+            }
+            historyModel.clear();
+            showStats(historyStore.statsFor(currentUser));
+            showPage(QuizHistoryStore.NEWEST);
+            if (historyModel.isEmpty()) {
                 historyModel.addElement("No quizzes completed yet.");
+            }
+        }
+
+        private void showPage(long cursor) {
+            if (currentUser == null) {
                 return;
             }
-            for (QuizHistoryStore.QuizRecord record : records) {
+            QuizHistoryStore.Page page = historyStore.loadPage(currentUser, cursor, HISTORY_PAGE_SIZE);
+            for (QuizHistoryStore.QuizRecord record : page.getRecords()) {
                 String topicLabel = record.topic == null || record.topic.isBlank() ? "Custom Quiz" : record.topic;
                 String difficultyLabel = capitalize(record.difficulty);
                 String line = String.format(
@@ -625,15 +719,51 @@ public class AIQuizMaster extends JFrame {
                 );
                 historyModel.addElement(line);
             }
+            nextCursor = page.getNextCursor();
+            olderButton.setVisible(page.hasMore());
+            revalidate();
         }
 
-        private String formatTimestamp(String timestamp) {
-            try {
-                Instant instant = Instant.parse(timestamp);
-                return HISTORY_TIME_FORMAT.format(instant);
-            } catch (Exception ex) {
-                return timestamp != null ? timestamp : "";
+        private void showStats(HistoryStats.Summary stats) {
+            HistoryStats.Breakdown overall = stats.getOverall();
+            if (overall.getCount() == 0) {
+                return;
             }
+            statsLabel.setText(String.format(
+                    "%d quizzes • avg %.0f%% (%d–%d%%) • streak %d %s, best %d • last 7 days: %d, avg %.0f%%",
+                    overall.getCount(),
+                    overall.getMeanScore(),
+                    overall.getMinScore(),
+                    overall.getMaxScore(),
+                    stats.getCurrentStreak(),
+                    stats.getCurrentStreak() == 1 ? "day" : "days",
+                    stats.getBestStreak(),
+                    stats.getLast7Count(),
+                    stats.getLast7MeanScore()
+            ));
+            StringBuilder tooltip = new StringBuilder("<html>");
+            tooltip.append(String.format("Last 30 days: %d quizzes, avg %.0f%%",
+                    stats.getLast30Count(), stats.getLast30MeanScore()));
+            appendBreakdowns(tooltip, "Topics", stats.getByTopic(), false);
+            appendBreakdowns(tooltip, "Difficulty", stats.getByDifficulty(), true);
+            statsLabel.setToolTipText(tooltip.append("</html>").toString());
+        }
+
+        private void appendBreakdowns(StringBuilder tooltip, String heading,
+                                      Map<String, HistoryStats.Breakdown> breakdowns, boolean capitalized) {
+            tooltip.append("<br><br><b>").append(heading).append("</b>");
+            breakdowns.entrySet().stream().limit(STATS_TOOLTIP_ROWS).forEach(entry -> {
+                String label = entry.getKey().isBlank() ? "Custom Quiz"
+                        : capitalized ? capitalize(entry.getKey()) : entry.getKey();
+                HistoryStats.Breakdown breakdown = entry.getValue();
+                tooltip.append(String.format("<br>%s: %d, avg %.0f%%",
+                        label.replace("&", "&amp;").replace("<", "&lt;"),
+                        breakdown.getCount(), breakdown.getMeanScore()));
+            });
+        }
+
+        private String formatTimestamp(long timestamp) {
+            return HISTORY_TIME_FORMAT.format(Instant.ofEpochMilli(timestamp));
         }
     }
 
@@ -738,16 +868,61 @@ public class AIQuizMaster extends JFrame {
             this.selections = new int[this.questions.size()];
             Arrays.fill(this.selections, -1);
             this.currentIndex = 0;
-            String topicLabel = quizData.getTopic().isEmpty() ? "Custom Quiz" : quizData.getTopic();
-            String difficultyLabel = capitalize(quizData.getDifficulty());
-            quizInfoLabel.setText(topicLabel);
-            difficultyBadge.setText(difficultyLabel);
-            difficultyBadge.setVisible(true);
-            progressBar.setMaximum(this.questions.size());
-            progressBar.setValue(0);
+            showQuizInfo(quizData.getTopic(), quizData.getDifficulty());
+            showCurrentQuestion();
+        }
+
+        /**
+         * Shows the first question of a quiz whose remaining questions are still being
+         * generated. Later questions arrive through {@link #appendQuestion}; the quiz can
+         * only be submitted after {@link #completeStreaming}.
+         */
+        void beginStreaming(String topic, String difficulty, int expectedCount, QuizQuestion firstQuestion) {
+            this.quizData = null;
+            this.questions = new ArrayList<>();
+            this.questions.add(firstQuestion);
+            this.selections = new int[0];
+            resizeSelections(Math.max(expectedCount, 1));
+            this.currentIndex = 0;
+            showQuizInfo(topic, difficulty);
             showCurrentQuestion();
         }
 
+        void appendQuestion(QuizQuestion question) {
+            questions.add(question);
+            if (questions.size() > selections.length) {
+                resizeSelections(questions.size());
+            }
+            updateProgressIndicators();
+            updateControls();
+        }
+
+        void completeStreaming(QuizService.QuizData quizData) {
+            this.quizData = quizData;
+            this.questions = new ArrayList<>(quizData.getQuestions());
+            if (questions.size() != selections.length) {
+                resizeSelections(questions.size());
+                currentIndex = Math.min(currentIndex, questions.size() - 1);
+                showCurrentQuestion();
+                return;
+            }
+            updateControls();
+        }
+
+        private void resizeSelections(int size) {
+            int previous = selections.length;
+            selections = Arrays.copyOf(selections, size);
+            if (size > previous) {
+                Arrays.fill(selections, previous, size, -1);
+            }
+        }
+
+        private void showQuizInfo(String topic, String difficulty) {
+            quizInfoLabel.setText(topic.isEmpty() ? "Custom Quiz" : topic);
+            difficultyBadge.setText(capitalize(difficulty));
+            difficultyBadge.setVisible(true);
+        }
+
         private void showCurrentQuestion() {
             QuizQuestion question = questions.get(currentIndex);
             questionLabel.setText("<html><body style='width: 450px'>" + question.getPrompt() + "</body></html>");
@@ -811,13 +986,16 @@ public class AIQuizMaster extends JFrame {
         }
 
         private void updateControls() {
-            boolean isLastQuestion = currentIndex == questions.size() - 1;
+            // While a quiz is streaming, selections already covers questions that have not arrived yet.
+            boolean isLastQuestion = currentIndex == selections.length - 1;
+            boolean nextArrived = currentIndex < questions.size() - 1;
             submitButton.setVisible(isLastQuestion);
             nextButton.setVisible(!isLastQuestion);
+            nextButton.setText(isLastQuestion || nextArrived ? "Next" : "Generating next question...");
 
             boolean hasSelection = selections[currentIndex] != -1 || optionGroup.getSelection() != null;
-            nextButton.setEnabled(!isLastQuestion && hasSelection);
-            submitButton.setEnabled(isLastQuestion && hasSelection);
+            nextButton.setEnabled(!isLastQuestion && hasSelection && nextArrived);
+            submitButton.setEnabled(isLastQuestion && hasSelection && quizData != null);
         }
 
         void reset() {
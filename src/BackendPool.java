@@ -0,0 +1,260 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client-side load balancer over one or more quiz backend instances. Each request goes
+ * to the endpoint with the lowest cost under the configured {@link Policy}. Endpoints
+ * that keep failing are ejected for a while, and {@code /health} is probed in the
+ * background so ejected instances come back as soon as they answer again.
+ */
+final class BackendPool {
+
+    enum Policy {
+        /** Fewest requests in flight; ties rotate round-robin. */
+        LEAST_OUTSTANDING,
+        /** Recent latency (decaying EWMA) weighted by requests in flight. */
+        EWMA_LATENCY
+    }
+
+    private static final String DEFAULT_ENDPOINT = "http://localhost:3000";
+    private static final double EWMA_WEIGHT = 0.3;
+    // Floor for the latency estimate, so requests in flight still count on unmeasured endpoints.
+    private static final double MIN_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    // Idle endpoints forget their latency history so a recovered instance is retried.
+    private static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(30);
+    // Latency charged for a failed request, so a failing endpoint stops looking cheap.
+    private static final double FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(2);
+
+    private final HttpClient client;
+    private final List<Endpoint> endpoints;
+    private final Policy policy;
+    private final int ejectAfterFailures;
+    private final long ejectNanos;
+    private final long probeMillis;
+    private final AtomicInteger rotation = new AtomicInteger();
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    BackendPool(HttpClient client, List<URI> baseUris, Policy policy,
+                int ejectAfterFailures, long ejectMillis, long probeMillis) {
+        if (baseUris.isEmpty()) {
+            throw new IllegalArgumentException("At least one backend endpoint is required");
+        }
+        List<Endpoint> created = new ArrayList<>(baseUris.size());
+        for (URI baseUri : baseUris) {
+            created.add(new Endpoint(baseUri));
+        }
+        this.client = client;
+        this.endpoints = Collections.unmodifiableList(created);
+        this.policy = policy;
+        this.ejectAfterFailures = Math.max(1, ejectAfterFailures);
+        this.ejectNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ejectMillis));
+        this.probeMillis = probeMillis;
+    }
+
+    /**
+     * Reads {@code quizmaster.backends}, a comma-separated list of base URLs such as
+     * {@code http://localhost:3000,http://localhost:3001}, plus the balancing knobs.
+     * Health probes bypass the transport, so they are off when replaying.
+     */
+    static BackendPool fromSettings(HttpClient client) {
+        List<URI> baseUris = new ArrayList<>();
+        for (String value : ClientSettings.stringValue("backends", DEFAULT_ENDPOINT).split(",")) {
+            String trimmed = value.trim();
+            while (trimmed.endsWith("/")) {
+                trimmed = trimmed.substring(0, trimmed.length() - 1);
+            }
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            try {
+                baseUris.add(URI.create(trimmed));
+            } catch (IllegalArgumentException ignored) {
+                // Skip malformed entries rather than refusing to start.
+            }
+        }
+        if (baseUris.isEmpty()) {
+            baseUris.add(URI.create(DEFAULT_ENDPOINT));
+        }
+        return new BackendPool(
+                client,
+                baseUris,
+                ClientSettings.enumValue("backends.policy", Policy.EWMA_LATENCY),
+                ClientSettings.intValue("backends.ejectAfterFailures", 3),
+                ClientSettings.longValue("backends.ejectSeconds", 30) * 1000L,
+                QuizTransport.configuredKind() == QuizTransport.Kind.REPLAY
+                        ? 0 : ClientSettings.longValue("backends.probeSeconds", 10) * 1000L
+        );
+    }
+
+    List<Endpoint> endpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Picks the endpoint for the next request. Ejected endpoints are skipped unless every
+     * endpoint is ejected, in which case the one due back first is used.
+     */
+    Endpoint choose() {
+        startProbing();
+        long now = System.nanoTime();
+        int count = endpoints.size();
+        int offset = Math.floorMod(rotation.getAndIncrement(), count);
+        Endpoint best = null;
+        double bestCost = 0;
+        for (int i = 0; i < count; i++) {
+            Endpoint endpoint = endpoints.get((offset + i) % count);
+            if (endpoint.isEjected(now)) {
+                continue;
+            }
+            double cost = policy == Policy.LEAST_OUTSTANDING ? endpoint.outstanding() : endpoint.cost(now);
+            if (best == null || cost < bestCost) {
+                best = endpoint;
+                bestCost = cost;
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+        for (Endpoint endpoint : endpoints) {
+            if (best == null || endpoint.ejectedUntil() - best.ejectedUntil() < 0) {
+                best = endpoint;
+            }
+        }
+        return best;
+    }
+
+    private void startProbing() {
+        if (probeMillis <= 0 || endpoints.size() < 2 || !probing.compareAndSet(false, true)) {
+            return;
+        }
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "backend-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::probeAll, probeMillis, probeMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void probeAll() {
+        for (Endpoint endpoint : endpoints) {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(endpoint.resolve("/health"))
+                    .timeout(PROBE_TIMEOUT)
+                    .GET()
+                    .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        if (failure == null && response.statusCode() >= 200 && response.statusCode() < 300) {
+                            endpoint.probeSucceeded();
+                        } else {
+                            endpoint.recordFailure();
+                        }
+                    });
+        }
+    }
+
+    /**
+     * One backend instance and its load and health state. Callers bracket each request
+     * with {@link #begin()} and {@link #end()}, and report how the backend answered
+     * with {@link #recordSuccess(long)} or {@link #recordFailure()}.
+     */
+    final class Endpoint {
+        private final URI baseUri;
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        // Guarded by this.
+        private boolean sampled;
+        private double ewmaNanos;
+        private long lastSampleAt;
+        private int consecutiveFailures;
+        private long ejectedUntil;
+        private boolean ejected;
+
+        Endpoint(URI baseUri) {
+            this.baseUri = baseUri;
+        }
+
+        URI resolve(String path) {
+            return URI.create(baseUri + path);
+        }
+
+        int outstanding() {
+            return outstanding.get();
+        }
+
+        /**
+         * Marks a request as started and returns its start time for
+         * {@link #recordSuccess(long)}.
+         */
+        long begin() {
+            outstanding.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        void end() {
+            outstanding.decrementAndGet();
+        }
+
+        synchronized void recordSuccess(long startedAt) {
+            long now = System.nanoTime();
+            addSample(now, now - startedAt);
+            consecutiveFailures = 0;
+            ejected = false;
+        }
+
+        synchronized void recordFailure() {
+            addSample(System.nanoTime(), FAILURE_PENALTY_NANOS);
+            consecutiveFailures++;
+            if (consecutiveFailures >= ejectAfterFailures) {
+                ejected = true;
+                ejectedUntil = System.nanoTime() + ejectNanos;
+            }
+        }
+
+        synchronized boolean isEjected(long now) {
+            if (ejected && now - ejectedUntil >= 0) {
+                // Give it another chance; one more failure ejects it again.
+                ejected = false;
+                consecutiveFailures = ejectAfterFailures - 1;
+            }
+            return ejected;
+        }
+
+        private void addSample(long now, double sample) {
+            ewmaNanos = sampled ? ewmaNanos + EWMA_WEIGHT * (sample - ewmaNanos) : sample;
+            sampled = true;
+            lastSampleAt = now;
+        }
+
+        private synchronized void probeSucceeded() {
+            consecutiveFailures = 0;
+            ejected = false;
+        }
+
+        private synchronized long ejectedUntil() {
+            return ejectedUntil;
+        }
+
+        private synchronized double cost(long now) {
+            double latency = !sampled ? 0 : ewmaNanos * Math.exp(-(double) (now - lastSampleAt) / DECAY_NANOS);
+            return Math.max(latency, MIN_LATENCY_NANOS) * (outstanding.get() + 1);
+        }
+
+        @Override
+        public String toString() {
+            return baseUri.toString();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+import java.util.Locale;
+
+/**
+ * Reads client tuning knobs from {@code -Dquizmaster.*} system properties.
+ * Missing or malformed values fall back to the supplied defaults.
+ */
+final class ClientSettings {
+
+    private static final String PREFIX = "quizmaster.";
+
+    private ClientSettings() {
+    }
+
+    static String stringValue(String name, String fallback) {
+        String value = System.getProperty(PREFIX + name);
+        return value == null || value.isBlank() ? fallback : value.trim();
+    }
+
+    static int intValue(String name, int fallback) {
+        String value = stringValue(name, null);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            return fallback;
+        }
+    }
+
+    static long longValue(String name, long fallback) {
+        String value = stringValue(name, null);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            return fallback;
+        }
+    }
+
+    static double doubleValue(String name, double fallback) {
+        String value = stringValue(name, null);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ex) {
+            return fallback;
+        }
+    }
+
+    static boolean booleanValue(String name, boolean fallback) {
+        String value = stringValue(name, null);
+        if (value == null) {
+            return fallback;
+        }
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        return fallback;
+    }
+
+    static <E extends Enum<E>> E enumValue(String name, E fallback) {
+        String value = stringValue(name, null);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Enum.valueOf(fallback.getDeclaringClass(), value.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException ex) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Append-only file of recorded backend exchanges. Each record holds the request
+ * (method, path, uncompressed body) and the response as it arrived: status, headers,
+ * the delay until the headers, and every body chunk with its arrival time, still
+ * content-encoded. Records are length-prefixed, so a record torn by a crash is
+ * ignored when the log is read.
+ */
+final class ExchangeLog {
+
+    private static final int MAGIC = 0x51584c47; // "QXLG"
+    private static final int VERSION = 1;
+
+    private final Path file;
+
+    ExchangeLog(Path file) {
+        this.file = file;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    synchronized void append(Exchange exchange) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + exchange.bodySize());
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // length, filled in below
+        out.writeUTF(exchange.method);
+        out.writeUTF(exchange.path);
+        out.writeInt(exchange.payload.length);
+        out.write(exchange.payload);
+        out.writeInt(exchange.status);
+        out.writeLong(exchange.headersNanos);
+        int headerCount = 0;
+        for (List<String> values : exchange.headers.values()) {
+            headerCount += values.size();
+        }
+        out.writeInt(headerCount);
+        for (Map.Entry<String, List<String>> header : exchange.headers.entrySet()) {
+            for (String value : header.getValue()) {
+                out.writeUTF(header.getKey());
+                out.writeUTF(value);
+            }
+        }
+        out.writeInt(exchange.chunks.size());
+        for (Chunk chunk : exchange.chunks) {
+            out.writeLong(chunk.atNanos);
+            out.writeInt(chunk.bytes.length);
+            out.write(chunk.bytes);
+        }
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        record.putInt(0, record.capacity() - Integer.BYTES);
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(Integer.BYTES * 2).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                channel.write(header);
+            }
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        }
+    }
+
+    /**
+     * Reads every complete record, in the order they were appended.
+     */
+    List<Exchange> readAll() throws IOException {
+        byte[] contents;
+        try {
+            contents = Files.readAllBytes(file);
+        } catch (NoSuchFileException ex) {
+            return Collections.emptyList();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(contents);
+        if (buffer.remaining() < Integer.BYTES * 2 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not an exchange log: " + file);
+        }
+        List<Exchange> exchanges = new ArrayList<>();
+        while (buffer.remaining() >= Integer.BYTES) {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                break;
+            }
+            try (DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(contents, buffer.position(), length))) {
+                exchanges.add(readExchange(in));
+            } catch (EOFException ex) {
+                break;
+            }
+            buffer.position(buffer.position() + length);
+        }
+        return exchanges;
+    }
+
+    private static Exchange readExchange(DataInputStream in) throws IOException {
+        String method = in.readUTF();
+        String path = in.readUTF();
+        byte[] payload = readBytes(in, in.readInt());
+        int status = in.readInt();
+        long headersNanos = in.readLong();
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        int headerCount = in.readInt();
+        for (int i = 0; i < headerCount; i++) {
+            headers.computeIfAbsent(in.readUTF(), ignored -> new ArrayList<>()).add(in.readUTF());
+        }
+        int chunkCount = in.readInt();
+        List<Chunk> chunks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            long atNanos = in.readLong();
+            chunks.add(new Chunk(atNanos, readBytes(in, in.readInt())));
+        }
+        return new Exchange(method, path, payload, status, headersNanos, headers, chunks);
+    }
+
+    private static byte[] readBytes(InputStream in, int length) throws IOException {
+        if (length < 0) {
+            throw new EOFException();
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException();
+        }
+        return bytes;
+    }
+
+    /**
+     * One recorded request and its response. Times are nanoseconds since the request
+     * was sent.
+     */
+    static final class Exchange {
+        final String method;
+        final String path;
+        final byte[] payload;
+        final int status;
+        final long headersNanos;
+        final Map<String, List<String>> headers;
+        final List<Chunk> chunks;
+
+        Exchange(String method, String path, byte[] payload, int status, long headersNanos,
+                 Map<String, List<String>> headers, List<Chunk> chunks) {
+            this.method = method;
+            this.path = path;
+            this.payload = payload;
+            this.status = status;
+            this.headersNanos = headersNanos;
+            this.headers = headers;
+            this.chunks = chunks;
+        }
+
+        int bodySize() {
+            int size = 0;
+            for (Chunk chunk : chunks) {
+                size += chunk.bytes.length;
+            }
+            return size;
+        }
+    }
+
+    static final class Chunk {
+        final long atNanos;
+        final byte[] bytes;
+
+        Chunk(long atNanos, byte[] bytes) {
+            this.atNanos = atNanos;
+            this.bytes = bytes;
+        }
+    }
+}
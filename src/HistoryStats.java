@@ -0,0 +1,376 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Running per-user aggregates over quiz history: score count/mean/min/max, per-topic
+ * and per-difficulty breakdowns, daily streaks, and the last 7 and 30 days. Every
+ * result updates them in constant time, so a summary never needs a history scan. The
+ * aggregates serialize to a checkpoint that records how many log records they cover.
+ * <p>
+ * Days are calendar dates in the system time zone, with the daylight-saving rules in
+ * effect at each result. The checkpoint records the zone, and a checkpoint taken in
+ * another zone is not loaded.
+ */
+final class HistoryStats {
+
+    private static final int MAGIC = 0x51485354; // "QHST"
+    private static final int VERSION = 2;
+    private static final int WINDOW_DAYS = 30;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    // Bounds of the day last looked up; log records arrive in time order, so most hit it.
+    private long cachedDay;
+    private long cachedDayStart = Long.MAX_VALUE;
+    private long cachedDayEnd = Long.MIN_VALUE;
+    private final Map<String, UserStats> users = new HashMap<>();
+    private long recordsCovered;
+
+    long recordsCovered() {
+        return recordsCovered;
+    }
+
+    void add(String user, String topic, String difficulty, long timestamp, int scorePercent) {
+        users.computeIfAbsent(user, ignored -> new UserStats())
+                .add(topic, difficulty, epochDay(timestamp), scorePercent);
+        recordsCovered++;
+    }
+
+    Summary summary(String user, long now) {
+        UserStats stats = users.get(user);
+        return stats == null ? Summary.EMPTY : stats.summary(epochDay(now));
+    }
+
+    private long epochDay(long timestamp) {
+        if (timestamp < cachedDayStart || timestamp >= cachedDayEnd) {
+            LocalDate day = Instant.ofEpochMilli(timestamp).atZone(zone).toLocalDate();
+            cachedDay = day.toEpochDay();
+            cachedDayStart = day.atStartOfDay(zone).toInstant().toEpochMilli();
+            cachedDayEnd = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+        return cachedDay;
+    }
+
+    byte[] toCheckpoint() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, zone.getId());
+            out.writeLong(recordsCovered);
+            out.writeInt(users.size());
+            for (Map.Entry<String, UserStats> entry : users.entrySet()) {
+                writeString(out, entry.getKey());
+                entry.getValue().write(out);
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Writing to memory cannot fail", ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns {@code null} when {@code checkpoint} is not a complete checkpoint, or was
+     * taken in another time zone and so counts different days.
+     */
+    static HistoryStats fromCheckpoint(byte[] checkpoint) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(checkpoint))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            HistoryStats stats = new HistoryStats();
+            if (!stats.zone.getId().equals(readString(in))) {
+                return null;
+            }
+            stats.recordsCovered = in.readLong();
+            int userCount = in.readInt();
+            for (int i = 0; i < userCount; i++) {
+                stats.users.put(readString(in), UserStats.read(in));
+            }
+            return in.read() == -1 ? stats : null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Plain UTF-8 behind an int length. Unlike {@link DataOutputStream#writeUTF}, this
+     * holds any string the history dictionary can, so a checkpoint is never refused.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new EOFException("Truncated string in checkpoint");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class UserStats {
+        private final Breakdown overall = new Breakdown();
+        private final Map<String, Breakdown> byTopic = new HashMap<>();
+        private final Map<String, Breakdown> byDifficulty = new HashMap<>();
+        private long lastDay = Long.MIN_VALUE;
+        private int currentStreak;
+        private int bestStreak;
+        // Ring of the last WINDOW_DAYS active days, indexed by day modulo WINDOW_DAYS.
+        private final long[] windowDays = new long[WINDOW_DAYS];
+        private final int[] windowCounts = new int[WINDOW_DAYS];
+        private final long[] windowScores = new long[WINDOW_DAYS];
+
+        UserStats() {
+            Arrays.fill(windowDays, Long.MIN_VALUE);
+        }
+
+        void add(String topic, String difficulty, long day, int scorePercent) {
+            overall.add(scorePercent);
+            byTopic.computeIfAbsent(topic, ignored -> new Breakdown()).add(scorePercent);
+            byDifficulty.computeIfAbsent(difficulty, ignored -> new Breakdown()).add(scorePercent);
+
+            // Results older than the latest day (a clock change) leave the streak alone.
+            if (day == lastDay + 1) {
+                currentStreak++;
+            } else if (day > lastDay) {
+                currentStreak = 1;
+            }
+            lastDay = Math.max(lastDay, day);
+            bestStreak = Math.max(bestStreak, currentStreak);
+
+            int slot = (int) Math.floorMod(day, (long) WINDOW_DAYS);
+            if (windowDays[slot] < day) {
+                windowDays[slot] = day;
+                windowCounts[slot] = 0;
+                windowScores[slot] = 0;
+            }
+            if (windowDays[slot] == day) {
+                windowCounts[slot]++;
+                windowScores[slot] += scorePercent;
+            }
+        }
+
+        Summary summary(long today) {
+            int count7 = 0;
+            long score7 = 0;
+            int count30 = 0;
+            long score30 = 0;
+            for (int i = 0; i < WINDOW_DAYS; i++) {
+                long age = today - windowDays[i];
+                if (windowDays[i] == Long.MIN_VALUE || age < 0 || age >= WINDOW_DAYS) {
+                    continue;
+                }
+                count30 += windowCounts[i];
+                score30 += windowScores[i];
+                if (age < 7) {
+                    count7 += windowCounts[i];
+                    score7 += windowScores[i];
+                }
+            }
+            // The streak is still alive if the user played today or yesterday.
+            int current = today - lastDay <= 1 ? currentStreak : 0;
+            return new Summary(overall.copy(), copy(byTopic), copy(byDifficulty), current, bestStreak,
+                    count7, count7 == 0 ? 0 : (double) score7 / count7,
+                    count30, count30 == 0 ? 0 : (double) score30 / count30);
+        }
+
+        private static Map<String, Breakdown> copy(Map<String, Breakdown> source) {
+            Map<String, Breakdown> copy = new LinkedHashMap<>();
+            source.entrySet().stream()
+                    .sorted((a, b) -> Integer.compare(b.getValue().count, a.getValue().count))
+                    .forEach(entry -> copy.put(entry.getKey(), entry.getValue().copy()));
+            return Collections.unmodifiableMap(copy);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            overall.write(out);
+            writeBreakdowns(out, byTopic);
+            writeBreakdowns(out, byDifficulty);
+            out.writeLong(lastDay);
+            out.writeInt(currentStreak);
+            out.writeInt(bestStreak);
+            for (int i = 0; i < WINDOW_DAYS; i++) {
+                out.writeLong(windowDays[i]);
+                out.writeInt(windowCounts[i]);
+                out.writeLong(windowScores[i]);
+            }
+        }
+
+        static UserStats read(DataInputStream in) throws IOException {
+            UserStats stats = new UserStats();
+            stats.overall.read(in);
+            readBreakdowns(in, stats.byTopic);
+            readBreakdowns(in, stats.byDifficulty);
+            stats.lastDay = in.readLong();
+            stats.currentStreak = in.readInt();
+            stats.bestStreak = in.readInt();
+            for (int i = 0; i < WINDOW_DAYS; i++) {
+                stats.windowDays[i] = in.readLong();
+                stats.windowCounts[i] = in.readInt();
+                stats.windowScores[i] = in.readLong();
+            }
+            return stats;
+        }
+
+        private static void writeBreakdowns(DataOutputStream out, Map<String, Breakdown> breakdowns) throws IOException {
+            out.writeInt(breakdowns.size());
+            for (Map.Entry<String, Breakdown> entry : breakdowns.entrySet()) {
+                writeString(out, entry.getKey());
+                entry.getValue().write(out);
+            }
+        }
+
+        private static void readBreakdowns(DataInputStream in, Map<String, Breakdown> breakdowns) throws IOException {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = readString(in);
+                Breakdown breakdown = new Breakdown();
+                breakdown.read(in);
+                breakdowns.put(key, breakdown);
+            }
+        }
+    }
+
+    /**
+     * Count and score range of a group of results.
+     */
+    static final class Breakdown {
+        private int count;
+        private long scoreSum;
+        private int minScore = Integer.MAX_VALUE;
+        private int maxScore = Integer.MIN_VALUE;
+
+        void add(int scorePercent) {
+            count++;
+            scoreSum += scorePercent;
+            minScore = Math.min(minScore, scorePercent);
+            maxScore = Math.max(maxScore, scorePercent);
+        }
+
+        Breakdown copy() {
+            Breakdown copy = new Breakdown();
+            copy.count = count;
+            copy.scoreSum = scoreSum;
+            copy.minScore = minScore;
+            copy.maxScore = maxScore;
+            return copy;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getMeanScore() {
+            return count == 0 ? 0 : (double) scoreSum / count;
+        }
+
+        public int getMinScore() {
+            return count == 0 ? 0 : minScore;
+        }
+
+        public int getMaxScore() {
+            return count == 0 ? 0 : maxScore;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeInt(count);
+            out.writeLong(scoreSum);
+            out.writeInt(minScore);
+            out.writeInt(maxScore);
+        }
+
+        private void read(DataInputStream in) throws IOException {
+            count = in.readInt();
+            scoreSum = in.readLong();
+            minScore = in.readInt();
+            maxScore = in.readInt();
+        }
+    }
+
+    /**
+     * A user's statistics as of one moment. Topics and difficulties are ordered by how
+     * often they were played.
+     */
+    static final class Summary {
+        static final Summary EMPTY = new Summary(new Breakdown(), Collections.emptyMap(), Collections.emptyMap(),
+                0, 0, 0, 0, 0, 0);
+
+        private final Breakdown overall;
+        private final Map<String, Breakdown> byTopic;
+        private final Map<String, Breakdown> byDifficulty;
+        private final int currentStreak;
+        private final int bestStreak;
+        private final int last7Count;
+        private final double last7MeanScore;
+        private final int last30Count;
+        private final double last30MeanScore;
+
+        Summary(Breakdown overall, Map<String, Breakdown> byTopic, Map<String, Breakdown> byDifficulty,
+                int currentStreak, int bestStreak, int last7Count, double last7MeanScore,
+                int last30Count, double last30MeanScore) {
+            this.overall = overall;
+            this.byTopic = byTopic;
+            this.byDifficulty = byDifficulty;
+            this.currentStreak = currentStreak;
+            this.bestStreak = bestStreak;
+            this.last7Count = last7Count;
+            this.last7MeanScore = last7MeanScore;
+            this.last30Count = last30Count;
+            this.last30MeanScore = last30MeanScore;
+        }
+
+        public Breakdown getOverall() {
+            return overall;
+        }
+
+        public Map<String, Breakdown> getByTopic() {
+            return byTopic;
+        }
+
+        public Map<String, Breakdown> getByDifficulty() {
+            return byDifficulty;
+        }
+
+        /** Consecutive days with at least one quiz, ending today or yesterday. */
+        public int getCurrentStreak() {
+            return currentStreak;
+        }
+
+        public int getBestStreak() {
+            return bestStreak;
+        }
+
+        public int getLast7Count() {
+            return last7Count;
+        }
+
+        public double getLast7MeanScore() {
+            return last7MeanScore;
+        }
+
+        public int getLast30Count() {
+            return last30Count;
+        }
+
+        public double getLast30MeanScore() {
+            return last30MeanScore;
+        }
+    }
+}
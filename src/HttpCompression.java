@@ -0,0 +1,147 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content-Encoding support for backend traffic: advertises gzip/deflate, decodes
+ * compressed responses as a stream so parsing starts with the first bytes, and
+ * optionally gzips larger request bodies.
+ */
+final class HttpCompression {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final boolean ACCEPT_COMPRESSED = ClientSettings.booleanValue("http.acceptCompressed", true);
+    private static final boolean GZIP_REQUESTS = ClientSettings.booleanValue("http.gzipRequests", false);
+    private static final int GZIP_MIN_BYTES = ClientSettings.intValue("http.gzipMinBytes", 1024);
+
+    private HttpCompression() {
+    }
+
+    /**
+     * Asks the backend for a compressed response when enabled.
+     */
+    static HttpRequest.Builder acceptCompressed(HttpRequest.Builder builder) {
+        return ACCEPT_COMPRESSED ? builder.header("Accept-Encoding", "gzip, deflate") : builder;
+    }
+
+    /**
+     * Returns the publisher for a JSON request body, gzipping it (and setting
+     * {@code Content-Encoding}) when enabled and the body is large enough to benefit.
+     */
+    static HttpRequest.BodyPublisher body(HttpRequest.Builder builder, byte[] json) {
+        if (!GZIP_REQUESTS || json.length < GZIP_MIN_BYTES) {
+            return HttpRequest.BodyPublishers.ofByteArray(json);
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, BUFFER_SIZE)) {
+            gzip.write(json);
+        } catch (IOException ex) {
+            // In-memory streams do not fail; send the body uncompressed if one somehow does.
+            return HttpRequest.BodyPublishers.ofByteArray(json);
+        }
+        builder.header("Content-Encoding", "gzip");
+        return HttpRequest.BodyPublishers.ofByteArray(compressed.toByteArray());
+    }
+
+    /**
+     * Wraps {@code body} so it yields the decoded entity according to the response's
+     * {@code Content-Encoding}. Decoding is incremental; nothing is buffered up front.
+     */
+    static InputStream decode(HttpResponse<?> response, InputStream body) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("").trim().toLowerCase(Locale.ROOT);
+        switch (encoding) {
+            case "":
+            case "identity":
+                return body;
+            case "gzip":
+            case "x-gzip":
+                return new StreamingGzipInputStream(body);
+            case "deflate":
+                return inflate(body);
+            default:
+                throw new IOException("Unsupported Content-Encoding: " + encoding);
+        }
+    }
+
+    private static InputStream inflate(InputStream body) throws IOException {
+        // HTTP "deflate" should be zlib-wrapped, but some servers send raw deflate data.
+        PushbackInputStream in = new PushbackInputStream(body, 2);
+        int first = in.read();
+        int second = first == -1 ? -1 : in.read();
+        if (second != -1) {
+            in.unread(second);
+        }
+        if (first != -1) {
+            in.unread(first);
+        }
+        boolean zlib = first != -1 && second != -1
+                && (first & 0x0f) == 8 && ((first << 8) | second) % 31 == 0;
+        return new StreamingInflaterInputStream(in, new Inflater(!zlib));
+    }
+
+    /*
+     * InflaterInputStream reports one available byte until the end of input, which makes
+     * InputStreamReader block for more network data even when a whole NDJSON line has
+     * already been decoded. These subclasses only report data that is really there.
+     */
+
+    private static final class StreamingGzipInputStream extends GZIPInputStream {
+        private boolean closed;
+
+        StreamingGzipInputStream(InputStream in) throws IOException {
+            super(in, BUFFER_SIZE);
+        }
+
+        @Override
+        public int available() throws IOException {
+            if (closed || inf.finished()) {
+                return 0;
+            }
+            return inf.getRemaining() > 0 ? 1 : in.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+    private static final class StreamingInflaterInputStream extends InflaterInputStream {
+        private boolean closed;
+
+        StreamingInflaterInputStream(InputStream in, Inflater inflater) {
+            super(in, inflater, BUFFER_SIZE);
+        }
+
+        @Override
+        public int available() throws IOException {
+            if (closed || inf.finished()) {
+                return 0;
+            }
+            return inf.getRemaining() > 0 ? 1 : in.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                // A caller-supplied Inflater is not released by InflaterInputStream itself.
+                inf.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,565 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pull-style JSON reader that decodes UTF-8 input in fixed-size chunks.
+ * Callers walk the document token by token instead of materializing a tree,
+ * so memory use stays flat regardless of the payload size.
+ */
+final class JsonStreamReader implements Closeable {
+
+    enum Token {
+        BEGIN_OBJECT,
+        END_OBJECT,
+        BEGIN_ARRAY,
+        END_ARRAY,
+        NAME,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL,
+        END_DOCUMENT
+    }
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder scratch = new StringBuilder();
+    private int pos;
+    private int limit;
+    private long consumed;
+
+    private int[] stack = new int[32];
+    private int depth;
+    private Token peeked;
+    private boolean peekedBoolean;
+    private boolean multipleDocuments;
+    private boolean closed;
+
+    JsonStreamReader(InputStream in) {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    JsonStreamReader(ByteBuffer bytes) {
+        this(new ByteBufferInputStream(bytes));
+    }
+
+    private JsonStreamReader(Reader reader) {
+        this.reader = reader;
+        this.stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Accepts a sequence of whitespace-separated top-level values, such as NDJSON,
+     * instead of rejecting anything after the first one. {@link Token#END_DOCUMENT}
+     * is then only reported at the end of the input.
+     */
+    void setMultipleDocuments(boolean multipleDocuments) {
+        this.multipleDocuments = multipleDocuments;
+    }
+
+    Token peek() throws IOException, SimpleJsonParser.JsonParseException {
+        if (closed) {
+            throw new IOException("JSON reader is closed");
+        }
+        if (peeked != null) {
+            return peeked;
+        }
+        int scope = stack[depth - 1];
+        switch (scope) {
+            case EMPTY_ARRAY:
+            case NONEMPTY_ARRAY: {
+                int c = nextNonWhitespace("Unexpected end of JSON input");
+                if (c == ']') {
+                    pos++;
+                    return peeked = Token.END_ARRAY;
+                }
+                if (scope == NONEMPTY_ARRAY) {
+                    if (c != ',') {
+                        throw error("Expected ',' or ']'");
+                    }
+                    pos++;
+                }
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                return peeked = peekValue();
+            }
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT: {
+                int c = nextNonWhitespace("Unexpected end of JSON input");
+                if (c == '}') {
+                    pos++;
+                    return peeked = Token.END_OBJECT;
+                }
+                if (scope == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw error("Expected ',' or '}'");
+                    }
+                    pos++;
+                    c = nextNonWhitespace("Unexpected end of JSON input");
+                }
+                if (c != '"') {
+                    throw error("Expected '\"'");
+                }
+                pos++;
+                return peeked = Token.NAME;
+            }
+            case DANGLING_NAME: {
+                int c = nextNonWhitespace("Unexpected end of JSON input");
+                if (c != ':') {
+                    throw error("Expected ':'");
+                }
+                pos++;
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                return peeked = peekValue();
+            }
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                return peeked = peekValue();
+            default: {
+                int c = nextNonWhitespace(null);
+                if (c == -1) {
+                    return peeked = Token.END_DOCUMENT;
+                }
+                if (!multipleDocuments) {
+                    throw error("Unexpected characters after JSON content");
+                }
+                return peeked = peekValue();
+            }
+        }
+    }
+
+    void beginObject() throws IOException, SimpleJsonParser.JsonParseException {
+        expectToken(Token.BEGIN_OBJECT, "Expected '{'");
+        push(EMPTY_OBJECT);
+    }
+
+    void endObject() throws IOException, SimpleJsonParser.JsonParseException {
+        expectToken(Token.END_OBJECT, "Expected '}'");
+        depth--;
+    }
+
+    void beginArray() throws IOException, SimpleJsonParser.JsonParseException {
+        expectToken(Token.BEGIN_ARRAY, "Expected '['");
+        push(EMPTY_ARRAY);
+    }
+
+    void endArray() throws IOException, SimpleJsonParser.JsonParseException {
+        expectToken(Token.END_ARRAY, "Expected ']'");
+        depth--;
+    }
+
+    boolean hasNext() throws IOException, SimpleJsonParser.JsonParseException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    String nextName() throws IOException, SimpleJsonParser.JsonParseException {
+        expectToken(Token.NAME, "Expected object key");
+        String name = readString(true);
+        stack[depth - 1] = DANGLING_NAME;
+        return name;
+    }
+
+    String nextString() throws IOException, SimpleJsonParser.JsonParseException {
+        expectToken(Token.STRING, "Expected string");
+        return readString(false);
+    }
+
+    Number nextNumber() throws IOException, SimpleJsonParser.JsonParseException {
+        expectToken(Token.NUMBER, "Expected number");
+        return readNumber();
+    }
+
+    boolean nextBoolean() throws IOException, SimpleJsonParser.JsonParseException {
+        expectToken(Token.BOOLEAN, "Expected boolean");
+        return peekedBoolean;
+    }
+
+    void nextNull() throws IOException, SimpleJsonParser.JsonParseException {
+        expectToken(Token.NULL, "Expected null");
+    }
+
+    /**
+     * Skips the next value, including nested objects and arrays, without
+     * allocating strings for its contents.
+     */
+    void skipValue() throws IOException, SimpleJsonParser.JsonParseException {
+        int count = 0;
+        do {
+            Token token = peek();
+            switch (token) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    count++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    count++;
+                    break;
+                case END_OBJECT:
+                    if (count == 0) {
+                        // The enclosing object's terminator belongs to the caller.
+                        throw new IllegalStateException("Expected a value but was " + token);
+                    }
+                    endObject();
+                    count--;
+                    break;
+                case END_ARRAY:
+                    if (count == 0) {
+                        throw new IllegalStateException("Expected a value but was " + token);
+                    }
+                    endArray();
+                    count--;
+                    break;
+                case NAME:
+                    if (count == 0) {
+                        throw error("Expected a value");
+                    }
+                    peeked = null;
+                    skipString();
+                    stack[depth - 1] = DANGLING_NAME;
+                    break;
+                case STRING:
+                    peeked = null;
+                    skipString();
+                    break;
+                case NUMBER:
+                    peeked = null;
+                    scanNumber();
+                    break;
+                case BOOLEAN:
+                case NULL:
+                    peeked = null;
+                    break;
+                default:
+                    throw error("Unexpected end of JSON input");
+            }
+        } while (count > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        peeked = null;
+        reader.close();
+    }
+
+    private Token peekValue() throws IOException, SimpleJsonParser.JsonParseException {
+        int c = nextNonWhitespace("Unexpected end of JSON input");
+        switch (c) {
+            case '{':
+                pos++;
+                return Token.BEGIN_OBJECT;
+            case '[':
+                pos++;
+                return Token.BEGIN_ARRAY;
+            case '"':
+                pos++;
+                return Token.STRING;
+            case 't':
+                expectLiteral("true");
+                peekedBoolean = true;
+                return Token.BOOLEAN;
+            case 'f':
+                expectLiteral("false");
+                peekedBoolean = false;
+                return Token.BOOLEAN;
+            case 'n':
+                expectLiteral("null");
+                return Token.NULL;
+            default:
+                if ((c >= '0' && c <= '9') || c == '-') {
+                    return Token.NUMBER;
+                }
+                throw error("Unexpected character: " + (char) c);
+        }
+    }
+
+    private void expectToken(Token expected, String message) throws IOException, SimpleJsonParser.JsonParseException {
+        if (peek() != expected) {
+            throw error(message);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) {
+            int[] grown = new int[depth * 2];
+            System.arraycopy(stack, 0, grown, 0, depth);
+            stack = grown;
+        }
+        stack[depth++] = scope;
+    }
+
+    private String readString(boolean name) throws IOException, SimpleJsonParser.JsonParseException {
+        // Fast path: the whole string sits in the current chunk without escapes.
+        for (int i = pos; i < limit; i++) {
+            char c = buffer[i];
+            if (c == '"') {
+                String value = name ? SimpleJsonParser.canonicalKey(buffer, pos, i - pos) : null;
+                if (value == null) {
+                    value = new String(buffer, pos, i - pos);
+                }
+                pos = i + 1;
+                return value;
+            }
+            if (c == '\\') {
+                break;
+            }
+        }
+        scratch.setLength(0);
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos];
+                if (c == '"') {
+                    scratch.append(buffer, start, pos - start);
+                    pos++;
+                    return scratch.toString();
+                }
+                if (c == '\\') {
+                    scratch.append(buffer, start, pos - start);
+                    pos++;
+                    scratch.append(readEscape());
+                    start = pos;
+                    continue;
+                }
+                pos++;
+            }
+            scratch.append(buffer, start, pos - start);
+            if (!fill()) {
+                throw error("Unterminated string literal");
+            }
+        }
+    }
+
+    private void skipString() throws IOException, SimpleJsonParser.JsonParseException {
+        while (true) {
+            while (pos < limit) {
+                char c = buffer[pos++];
+                if (c == '"') {
+                    return;
+                }
+                if (c == '\\') {
+                    readEscape();
+                }
+            }
+            if (!fill()) {
+                throw error("Unterminated string literal");
+            }
+        }
+    }
+
+    private char readEscape() throws IOException, SimpleJsonParser.JsonParseException {
+        int escaped = read();
+        switch (escaped) {
+            case -1:
+                throw error("Unterminated escape sequence in string");
+            case '"':
+            case '\\':
+            case '/':
+                return (char) escaped;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u': {
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int hex = read();
+                    if (hex == -1) {
+                        throw error("Incomplete unicode escape sequence");
+                    }
+                    int digit = Character.digit((char) hex, 16);
+                    if (digit == -1) {
+                        throw error("Invalid hex digit in unicode escape: " + (char) hex);
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            }
+            default:
+                throw error("Invalid escape sequence: \\" + (char) escaped);
+        }
+    }
+
+    private Number readNumber() throws IOException, SimpleJsonParser.JsonParseException {
+        scratch.setLength(0);
+        boolean fractional = scanNumber();
+        if (!fractional && scratch.length() <= 18) {
+            // Small integers are accumulated directly to avoid a temporary String.
+            boolean negative = scratch.charAt(0) == '-';
+            long value = 0;
+            for (int i = negative ? 1 : 0; i < scratch.length(); i++) {
+                value = value * 10 + (scratch.charAt(i) - '0');
+            }
+            value = negative ? -value : value;
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return (int) value;
+            }
+            return value;
+        }
+        String number = scratch.toString();
+        try {
+            if (fractional) {
+                return Double.parseDouble(number);
+            }
+            return Long.parseLong(number);
+        } catch (NumberFormatException ex) {
+            throw error("Invalid number: " + number);
+        }
+    }
+
+    /**
+     * Consumes a number, copying its characters into {@link #scratch}.
+     * Returns whether it had a fraction or exponent part.
+     */
+    private boolean scanNumber() throws IOException, SimpleJsonParser.JsonParseException {
+        scratch.setLength(0);
+        if (peekChar() == '-') {
+            scratch.append((char) read());
+        }
+        if (peekChar() == '0') {
+            scratch.append((char) read());
+        } else {
+            consumeDigits();
+        }
+        boolean fractional = false;
+        if (peekChar() == '.') {
+            fractional = true;
+            scratch.append((char) read());
+            consumeDigits();
+        }
+        int c = peekChar();
+        if (c == 'e' || c == 'E') {
+            fractional = true;
+            scratch.append((char) read());
+            c = peekChar();
+            if (c == '+' || c == '-') {
+                scratch.append((char) read());
+            }
+            consumeDigits();
+        }
+        return fractional;
+    }
+
+    private void consumeDigits() throws IOException, SimpleJsonParser.JsonParseException {
+        int c = peekChar();
+        if (c < '0' || c > '9') {
+            throw error("Expected digit");
+        }
+        do {
+            scratch.append((char) read());
+            c = peekChar();
+        } while (c >= '0' && c <= '9');
+    }
+
+    private void expectLiteral(String literal) throws IOException, SimpleJsonParser.JsonParseException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (read() != literal.charAt(i)) {
+                throw error("Expected \"" + literal + "\"");
+            }
+        }
+    }
+
+    private int nextNonWhitespace(String endOfInputMessage) throws IOException, SimpleJsonParser.JsonParseException {
+        while (true) {
+            while (pos < limit) {
+                char c = buffer[pos];
+                if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                    pos++;
+                } else {
+                    return c;
+                }
+            }
+            if (!fill()) {
+                if (endOfInputMessage != null) {
+                    throw error(endOfInputMessage);
+                }
+                return -1;
+            }
+        }
+    }
+
+    private int peekChar() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos];
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    /**
+     * Replaces the fully consumed chunk with the next one from the underlying reader.
+     */
+    private boolean fill() throws IOException {
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read < 0) {
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+
+    private SimpleJsonParser.JsonParseException error(String message) {
+        return new SimpleJsonParser.JsonParseException(message + " at position " + (consumed + pos));
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer source;
+
+        ByteBufferInputStream(ByteBuffer source) {
+            this.source = source.slice();
+        }
+
+        @Override
+        public int read() {
+            return source.hasRemaining() ? source.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!source.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, source.remaining());
+            source.get(target, offset, count);
+            return count;
+        }
+    }
+}
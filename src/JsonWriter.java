@@ -0,0 +1,244 @@
+import java.util.Arrays;
+
+/**
+ * Compact JSON writer that encodes straight to UTF-8 in a reusable byte buffer.
+ * One instance is pooled per thread: obtain it with {@link #acquire()} and hand it
+ * back with {@link #close()}, typically through try-with-resources.
+ */
+final class JsonWriter implements AutoCloseable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes();
+    private static final ThreadLocal<JsonWriter> POOL = ThreadLocal.withInitial(() -> new JsonWriter(true));
+
+    /** Short escape letter for each ASCII char that needs one, 'u' for \\u00XX, 0 for none. */
+    private static final byte[] ESCAPES = new byte[128];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = 'u';
+        }
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['\t'] = 't';
+    }
+
+    private final boolean pooled;
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int size;
+    private boolean[] hasElements = new boolean[16];
+    private int depth;
+    private boolean afterName;
+    private boolean inUse;
+
+    private JsonWriter(boolean pooled) {
+        this.pooled = pooled;
+    }
+
+    /**
+     * Returns this thread's pooled writer, or a fresh one if it is already in use
+     * further up the stack.
+     */
+    static JsonWriter acquire() {
+        JsonWriter writer = POOL.get();
+        if (writer.inUse) {
+            writer = new JsonWriter(false);
+        }
+        writer.inUse = true;
+        writer.size = 0;
+        writer.depth = 0;
+        writer.afterName = false;
+        return writer;
+    }
+
+    JsonWriter beginObject() {
+        beforeValue();
+        writeByte('{');
+        push();
+        return this;
+    }
+
+    JsonWriter endObject() {
+        depth--;
+        writeByte('}');
+        return this;
+    }
+
+    JsonWriter beginArray() {
+        beforeValue();
+        writeByte('[');
+        push();
+        return this;
+    }
+
+    JsonWriter endArray() {
+        depth--;
+        writeByte(']');
+        return this;
+    }
+
+    JsonWriter name(String name) {
+        beforeValue();
+        writeString(name);
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    JsonWriter value(String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    JsonWriter value(long value) {
+        beforeValue();
+        if (value == Long.MIN_VALUE) {
+            for (byte b : MIN_LONG) {
+                writeByte(b);
+            }
+            return this;
+        }
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = size + digits - 1; i >= size; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+        return this;
+    }
+
+    JsonWriter value(boolean value) {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    JsonWriter nullValue() {
+        beforeValue();
+        writeAscii("null");
+        return this;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Copies the encoded document out of the pooled buffer.
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    @Override
+    public void close() {
+        inUse = false;
+        if (pooled && buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (hasElements[depth - 1]) {
+                writeByte(',');
+            }
+            hasElements[depth - 1] = true;
+        }
+    }
+
+    private void push() {
+        if (depth == hasElements.length) {
+            hasElements = Arrays.copyOf(hasElements, depth * 2);
+        }
+        hasElements[depth++] = false;
+    }
+
+    private void writeString(String value) {
+        int length = value.length();
+        // Worst case is six bytes per char (\\u00XX); most strings need far less.
+        ensureCapacity(length * 3 + 2);
+        buffer[size++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                byte escape = ESCAPES[c];
+                if (escape == 0) {
+                    writeByte(c);
+                } else if (escape == 'u') {
+                    ensureCapacity(6);
+                    buffer[size++] = '\\';
+                    buffer[size++] = 'u';
+                    buffer[size++] = '0';
+                    buffer[size++] = '0';
+                    buffer[size++] = HEX[c >> 4];
+                    buffer[size++] = HEX[c & 0xf];
+                } else {
+                    writeByte('\\');
+                    writeByte(escape);
+                }
+            } else if (c < 0x800) {
+                writeByte(0xc0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    writeByte(0xf0 | (codePoint >> 18));
+                    writeByte(0x80 | ((codePoint >> 12) & 0x3f));
+                    writeByte(0x80 | ((codePoint >> 6) & 0x3f));
+                    writeByte(0x80 | (codePoint & 0x3f));
+                } else {
+                    // Unpaired surrogates cannot be encoded; mirror String.getBytes(UTF_8).
+                    writeByte('?');
+                }
+            } else {
+                writeByte(0xe0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3f));
+                writeByte(0x80 | (c & 0x3f));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeAscii(String value) {
+        ensureCapacity(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer[size++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void writeByte(int b) {
+        if (size == buffer.length) {
+            ensureCapacity(1);
+        }
+        buffer[size++] = (byte) b;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (size + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additional));
+        }
+    }
+}
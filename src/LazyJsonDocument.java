@@ -0,0 +1,387 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Indexed view over a UTF-8 JSON document. A single structural pass validates the
+ * input and records every value's kind and byte range on a compact int tape; values
+ * are only decoded when a caller asks for them.
+ */
+final class LazyJsonDocument {
+
+    static final int OBJECT = 1;
+    static final int ARRAY = 2;
+    static final int STRING = 3;
+    static final int NUMBER = 4;
+    static final int TRUE = 5;
+    static final int FALSE = 6;
+    static final int NULL = 7;
+
+    /** Each tape entry holds: kind | flags | child count, start offset, end offset, next entry. */
+    private static final int SLOT = 4;
+    private static final int KIND_MASK = 0x7;
+    private static final int ESCAPED_FLAG = 0x8;
+    private static final int COUNT_SHIFT = 4;
+
+    private final byte[] input;
+    private final int end;
+    private int index;
+    private int[] tape = new int[SLOT * 64];
+    private int tapeSize;
+
+    private LazyJsonDocument(byte[] input, int offset, int length) {
+        this.input = input;
+        this.index = offset;
+        this.end = offset + length;
+    }
+
+    static LazyJsonDocument parse(byte[] json) throws SimpleJsonParser.JsonParseException {
+        return parse(json, 0, json.length);
+    }
+
+    static LazyJsonDocument parse(byte[] json, int offset, int length) throws SimpleJsonParser.JsonParseException {
+        LazyJsonDocument document = new LazyJsonDocument(json, offset, length);
+        document.scanValue();
+        document.skipWhitespace();
+        if (document.index < document.end) {
+            throw document.error("Unexpected characters after JSON content");
+        }
+        return document;
+    }
+
+    Node root() {
+        return new Node(0);
+    }
+
+    /**
+     * Handle to one value on the tape. Creating and navigating nodes never decodes
+     * string or number contents.
+     */
+    final class Node {
+        private final int entry;
+
+        private Node(int entry) {
+            this.entry = entry;
+        }
+
+        int kind() {
+            return tape[entry] & KIND_MASK;
+        }
+
+        /**
+         * Number of elements for arrays, or members for objects; zero for scalars.
+         */
+        int size() {
+            return tape[entry] >>> COUNT_SHIFT;
+        }
+
+        /**
+         * Returns the member value for {@code key}, or {@code null} when this is not an
+         * object or the key is absent. Duplicate keys resolve to the last occurrence.
+         */
+        Node get(String key) {
+            if (kind() != OBJECT) {
+                return null;
+            }
+            byte[] wanted = key.getBytes(StandardCharsets.UTF_8);
+            int found = -1;
+            int limit = tape[entry + 3];
+            for (int child = entry + SLOT; child < limit; ) {
+                int value = child + SLOT;
+                if (keyEquals(child, wanted, key)) {
+                    found = value;
+                }
+                child = tape[value + 3];
+            }
+            return found < 0 ? null : new Node(found);
+        }
+
+        /**
+         * Returns the array element at {@code position}, or {@code null} when out of range
+         * or when this is not an array.
+         */
+        Node at(int position) {
+            if (kind() != ARRAY || position < 0 || position >= size()) {
+                return null;
+            }
+            int child = entry + SLOT;
+            for (int i = 0; i < position; i++) {
+                child = tape[child + 3];
+            }
+            return new Node(child);
+        }
+
+        String asString() {
+            if (kind() != STRING) {
+                return null;
+            }
+            return decodeString(entry);
+        }
+
+        Number asNumber() {
+            if (kind() != NUMBER) {
+                return null;
+            }
+            return (Number) materialize();
+        }
+
+        /**
+         * Fully decodes this value into the same representation {@link SimpleJsonParser} produces.
+         */
+        Object materialize() {
+            switch (kind()) {
+                case STRING:
+                    return decodeString(entry);
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case NULL:
+                    return null;
+                default:
+                    try {
+                        int start = tape[entry + 1];
+                        return Utf8JsonParser.parse(input, start, tape[entry + 2] - start);
+                    } catch (SimpleJsonParser.JsonParseException ex) {
+                        throw new IllegalStateException("Value was validated during indexing", ex);
+                    }
+            }
+        }
+    }
+
+    private boolean keyEquals(int keyEntry, byte[] wanted, String key) {
+        int start = tape[keyEntry + 1] + 1;
+        int stop = tape[keyEntry + 2] - 1;
+        if ((tape[keyEntry] & ESCAPED_FLAG) != 0) {
+            return key.equals(decodeString(keyEntry));
+        }
+        return Arrays.equals(input, start, stop, wanted, 0, wanted.length);
+    }
+
+    private String decodeString(int stringEntry) {
+        int start = tape[stringEntry + 1];
+        int stop = tape[stringEntry + 2];
+        if ((tape[stringEntry] & ESCAPED_FLAG) == 0) {
+            return new String(input, start + 1, stop - start - 2, StandardCharsets.UTF_8);
+        }
+        try {
+            return (String) Utf8JsonParser.parse(input, start, stop - start);
+        } catch (SimpleJsonParser.JsonParseException ex) {
+            throw new IllegalStateException("String was validated during indexing", ex);
+        }
+    }
+
+    private void scanValue() throws SimpleJsonParser.JsonParseException {
+        skipWhitespace();
+        if (index >= end) {
+            throw error("Unexpected end of JSON input");
+        }
+        byte c = input[index];
+        switch (c) {
+            case '{':
+                scanObject();
+                break;
+            case '[':
+                scanArray();
+                break;
+            case '"':
+                scanString();
+                break;
+            case 't':
+                scanLiteral("true", TRUE);
+                break;
+            case 'f':
+                scanLiteral("false", FALSE);
+                break;
+            case 'n':
+                scanLiteral("null", NULL);
+                break;
+            default:
+                if ((c >= '0' && c <= '9') || c == '-') {
+                    scanNumber();
+                    break;
+                }
+                throw error("Unexpected character: " + (char) (c & 0xff));
+        }
+    }
+
+    private void scanObject() throws SimpleJsonParser.JsonParseException {
+        int entry = open(OBJECT);
+        index++;
+        int count = 0;
+        skipWhitespace();
+        if (!match('}')) {
+            do {
+                skipWhitespace();
+                if (index >= end || input[index] != '"') {
+                    throw error("Expected '\"'");
+                }
+                scanString();
+                skipWhitespace();
+                expect(':');
+                scanValue();
+                count++;
+                skipWhitespace();
+            } while (match(','));
+            expect('}');
+        }
+        close(entry, count);
+    }
+
+    private void scanArray() throws SimpleJsonParser.JsonParseException {
+        int entry = open(ARRAY);
+        index++;
+        int count = 0;
+        skipWhitespace();
+        if (!match(']')) {
+            do {
+                scanValue();
+                count++;
+                skipWhitespace();
+            } while (match(','));
+            expect(']');
+        }
+        close(entry, count);
+    }
+
+    private void scanString() throws SimpleJsonParser.JsonParseException {
+        int entry = open(STRING);
+        index++;
+        boolean escaped = false;
+        while (true) {
+            int stop = Utf8JsonParser.findQuoteOrBackslash(input, index, end);
+            if (stop >= end) {
+                index = end;
+                throw error("Unterminated string literal");
+            }
+            index = stop + 1;
+            if (input[stop] == '"') {
+                break;
+            }
+            escaped = true;
+            scanEscape();
+        }
+        close(entry, 0);
+        if (escaped) {
+            tape[entry] |= ESCAPED_FLAG;
+        }
+    }
+
+    private void scanEscape() throws SimpleJsonParser.JsonParseException {
+        if (index >= end) {
+            throw error("Unterminated escape sequence in string");
+        }
+        byte escaped = input[index++];
+        switch (escaped) {
+            case '"':
+            case '\\':
+            case '/':
+            case 'b':
+            case 'f':
+            case 'n':
+            case 'r':
+            case 't':
+                return;
+            case 'u':
+                for (int i = 0; i < 4; i++) {
+                    if (index >= end) {
+                        throw error("Incomplete unicode escape sequence");
+                    }
+                    char hex = (char) (input[index++] & 0xff);
+                    if (Character.digit(hex, 16) == -1) {
+                        throw error("Invalid hex digit in unicode escape: " + hex);
+                    }
+                }
+                return;
+            default:
+                throw error("Invalid escape sequence: \\" + (char) (escaped & 0xff));
+        }
+    }
+
+    private void scanNumber() throws SimpleJsonParser.JsonParseException {
+        int entry = open(NUMBER);
+        match('-');
+        if (index < end && input[index] == '0') {
+            index++;
+        } else {
+            consumeDigits();
+        }
+        if (match('.')) {
+            consumeDigits();
+        }
+        if (index < end && (input[index] == 'e' || input[index] == 'E')) {
+            index++;
+            if (index < end && (input[index] == '+' || input[index] == '-')) {
+                index++;
+            }
+            consumeDigits();
+        }
+        close(entry, 0);
+    }
+
+    private void scanLiteral(String literal, int kind) throws SimpleJsonParser.JsonParseException {
+        int entry = open(kind);
+        for (int i = 0; i < literal.length(); i++) {
+            if (index >= end || input[index] != literal.charAt(i)) {
+                throw error("Expected \"" + literal + "\"");
+            }
+            index++;
+        }
+        close(entry, 0);
+    }
+
+    private void consumeDigits() throws SimpleJsonParser.JsonParseException {
+        if (index >= end || input[index] < '0' || input[index] > '9') {
+            throw error("Expected digit");
+        }
+        while (index < end && input[index] >= '0' && input[index] <= '9') {
+            index++;
+        }
+    }
+
+    private int open(int kind) {
+        if (tapeSize + SLOT > tape.length) {
+            tape = Arrays.copyOf(tape, tape.length * 2);
+        }
+        int entry = tapeSize;
+        tape[entry] = kind;
+        tape[entry + 1] = index;
+        tapeSize += SLOT;
+        return entry;
+    }
+
+    private void close(int entry, int count) {
+        tape[entry] |= count << COUNT_SHIFT;
+        tape[entry + 2] = index;
+        tape[entry + 3] = tapeSize;
+    }
+
+    private void expect(char expected) throws SimpleJsonParser.JsonParseException {
+        if (index >= end || input[index] != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+        index++;
+    }
+
+    private boolean match(char expected) {
+        if (index >= end || input[index] != expected) {
+            return false;
+        }
+        index++;
+        return true;
+    }
+
+    private void skipWhitespace() {
+        while (index < end) {
+            byte c = input[index];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                index++;
+            } else {
+                break;
+            }
+        }
+    }
+
+    private SimpleJsonParser.JsonParseException error(String message) {
+        return new SimpleJsonParser.JsonParseException(message + " at position " + index);
+    }
+}
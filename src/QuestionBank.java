@@ -0,0 +1,462 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local store of every question received from the backend, so quizzes can be put
+ * together without the network. Questions are appended to a single binary file under
+ * {@code user-data/}. Loading scans only the record headers to build an in-memory
+ * index of file offsets per topic and difficulty, and sampling reads just the records
+ * it picks, so both stay fast with hundreds of thousands of questions.
+ */
+final class QuestionBank {
+
+    /** When quizzes are assembled from the bank instead of the backend. */
+    enum Mode {
+        /** Only collect questions; use the bank when the backend cannot be reached. */
+        NETWORK_FIRST,
+        /** Serve from the bank when it has enough questions; otherwise use the backend. */
+        BANK_FIRST,
+        /** Never contact the backend. */
+        OFFLINE
+    }
+
+    private static final String DATA_DIRECTORY = "user-data";
+    private static final String BANK_FILE = "question-bank.dat";
+    private static final int MAGIC = 0x51424e4b; // "QBNK"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 8;
+    // Record header: body length (int), prompt fingerprint (long), topic and difficulty.
+    private static final int RECORD_FIXED_BYTES = Integer.BYTES + Long.BYTES;
+
+    private final Path file;
+    private final Mode mode;
+
+    // Guarded by this.
+    private boolean loaded;
+    private FileChannel channel;
+    private long endOffset;
+    private final Map<String, Bucket> buckets = new HashMap<>();
+    private final LongHashSet fingerprints = new LongHashSet();
+
+    QuestionBank(Path file, Mode mode) {
+        this.file = file;
+        this.mode = mode;
+    }
+
+    static QuestionBank fromSettings() {
+        return new QuestionBank(
+                Paths.get(DATA_DIRECTORY, BANK_FILE),
+                ClientSettings.enumValue("bank.mode", Mode.NETWORK_FIRST)
+        );
+    }
+
+    Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Stores the questions not already in the bank for the given topic and difficulty.
+     */
+    synchronized void addAll(String topic, String difficulty, List<QuizQuestion> questions) {
+        if (!ensureLoaded()) {
+            return;
+        }
+        String bucketKey = bucketKey(topic, difficulty);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        List<Long> added = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        Set<Long> batch = new HashSet<>();
+        try {
+            for (QuizQuestion question : questions) {
+                long fingerprint = fingerprint(bucketKey, question.promptKey());
+                if (fingerprints.contains(fingerprint) || !batch.add(fingerprint)) {
+                    continue;
+                }
+                byte[] record = encode(bucketKey, fingerprint, question);
+                if (record == null) {
+                    continue;
+                }
+                offsets.add(endOffset + bytes.size());
+                added.add(fingerprint);
+                out.write(record);
+            }
+            if (added.isEmpty()) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            long position = endOffset;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            endOffset = position;
+        } catch (IOException ignored) {
+            // The bank is an optimisation; a failed append only loses these questions.
+            return;
+        }
+        Bucket bucket = buckets.computeIfAbsent(bucketKey, ignored -> new Bucket());
+        for (int i = 0; i < added.size(); i++) {
+            fingerprints.add(added.get(i));
+            bucket.add(offsets.get(i));
+        }
+    }
+
+    /**
+     * Number of stored questions for the topic and difficulty.
+     */
+    synchronized int count(String topic, String difficulty) {
+        if (!ensureLoaded()) {
+            return 0;
+        }
+        Bucket bucket = buckets.get(bucketKey(topic, difficulty));
+        return bucket != null ? bucket.size : 0;
+    }
+
+    synchronized int size() {
+        return ensureLoaded() ? fingerprints.size() : 0;
+    }
+
+    /**
+     * Assembles a quiz of {@code questionCount} distinct questions picked at random, or
+     * returns {@code null} when the bank holds fewer than that for the key.
+     */
+    QuizService.QuizData sample(QuizService.QuizKey key) {
+        long[] picked;
+        FileChannel source;
+        synchronized (this) {
+            if (!ensureLoaded()) {
+                return null;
+            }
+            Bucket bucket = buckets.get(bucketKey(key.getTopic(), key.getDifficulty()));
+            if (bucket == null || bucket.size < key.getQuestionCount()) {
+                return null;
+            }
+            picked = bucket.sample(key.getQuestionCount());
+            source = channel;
+        }
+        List<QuizQuestion> questions = new ArrayList<>(picked.length);
+        try {
+            for (long offset : picked) {
+                questions.add(readQuestion(source, offset));
+            }
+        } catch (IOException | RuntimeException ex) {
+            return null;
+        }
+        return new QuizService.QuizData(null, key.getTopic(), key.getDifficulty(), questions.size(), questions);
+    }
+
+    private boolean ensureLoaded() {
+        if (loaded) {
+            return channel != null;
+        }
+        loaded = true;
+        try {
+            Files.createDirectories(file.getParent());
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() < FILE_HEADER_BYTES) {
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                channel.truncate(0);
+                channel.write(header, 0);
+                endOffset = FILE_HEADER_BYTES;
+                return true;
+            }
+            endOffset = index();
+            if (endOffset < channel.size()) {
+                // Drops a record torn by a crash mid-append.
+                channel.truncate(endOffset);
+            }
+            return true;
+        } catch (IOException ignored) {
+            // Without a readable bank file quizzes simply come from the backend.
+            closeQuietly();
+            return false;
+        }
+    }
+
+    /**
+     * Builds the index from the record headers and returns the end of the last
+     * complete record.
+     */
+    private long index() throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Question bank file is too large to index");
+        }
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (map.getInt() != MAGIC || map.getInt() != VERSION) {
+            throw new IOException("Unrecognised question bank file");
+        }
+        int position = FILE_HEADER_BYTES;
+        // Questions arrive a quiz at a time, so neighbouring records usually share a
+        // bucket; comparing raw key bytes skips decoding a String per record.
+        byte[] keyBytes = new byte[256];
+        int keyLength = -1;
+        Bucket bucket = null;
+        while (position + RECORD_FIXED_BYTES <= size) {
+            map.position(position);
+            int length = map.getInt();
+            if (length <= Long.BYTES + Short.BYTES || position + Integer.BYTES + (long) length > size) {
+                break;
+            }
+            long fingerprint = map.getLong();
+            int nextLength = map.getShort() & 0xffff;
+            if (nextLength > length - Long.BYTES - Short.BYTES) {
+                break;
+            }
+            if (nextLength != keyLength || !startsWith(map, keyBytes, keyLength)) {
+                if (keyBytes.length < nextLength) {
+                    keyBytes = new byte[nextLength];
+                }
+                map.get(keyBytes, 0, nextLength);
+                keyLength = nextLength;
+                String bucketKey;
+                try {
+                    bucketKey = decodeUtf(keyBytes, keyLength);
+                } catch (UTFDataFormatException ex) {
+                    // Corrupt record; treated like a torn tail.
+                    break;
+                }
+                bucket = buckets.computeIfAbsent(bucketKey, ignored -> new Bucket());
+            }
+            if (fingerprints.add(fingerprint)) {
+                bucket.add(position);
+            }
+            position += Integer.BYTES + length;
+        }
+        return position;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, byte[] bytes, int length) {
+        int start = buffer.position();
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] encode(String bucketKey, long fingerprint, QuizQuestion question) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(body);
+        try {
+            out.writeLong(fingerprint);
+            out.writeUTF(bucketKey);
+            out.writeUTF(question.getPrompt());
+            List<String> options = question.getOptions();
+            out.writeByte(options.size());
+            for (String option : options) {
+                out.writeUTF(option);
+            }
+            out.writeByte(question.getCorrectIndex());
+        } catch (UTFDataFormatException ex) {
+            // Longer than 64 KB; not worth keeping.
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + body.size());
+        record.putInt(body.size()).put(body.toByteArray());
+        return record.array();
+    }
+
+    private static QuizQuestion readQuestion(FileChannel source, long offset) throws IOException {
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+        readFully(source, lengthBuffer, offset);
+        ByteBuffer record = ByteBuffer.allocate(lengthBuffer.getInt(0));
+        readFully(source, record, offset + Integer.BYTES);
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(record.array(), Long.BYTES, record.limit() - Long.BYTES));
+        in.readUTF(); // bucket key
+        String prompt = in.readUTF();
+        int optionCount = in.readUnsignedByte();
+        List<String> options = new ArrayList<>(optionCount);
+        for (int i = 0; i < optionCount; i++) {
+            options.add(in.readUTF());
+        }
+        return new QuizQuestion(prompt, options, in.readUnsignedByte());
+    }
+
+    private static void readFully(FileChannel source, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = source.read(buffer, offset + buffer.position());
+            if (read < 0) {
+                throw new IOException("Question bank record is truncated");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Decodes the body of a string written by {@link DataOutputStream#writeUTF}. That is
+     * modified UTF-8, which encodes NUL and supplementary characters such as emoji
+     * differently from plain UTF-8.
+     */
+    private static String decodeUtf(byte[] bytes, int length) throws UTFDataFormatException {
+        byte[] prefixed = new byte[Short.BYTES + length];
+        prefixed[0] = (byte) (length >>> 8);
+        prefixed[1] = (byte) length;
+        System.arraycopy(bytes, 0, prefixed, Short.BYTES, length);
+        try {
+            return new DataInputStream(new ByteArrayInputStream(prefixed)).readUTF();
+        } catch (UTFDataFormatException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Reading from memory cannot fail", ex);
+        }
+    }
+
+    private static String bucketKey(String topic, String difficulty) {
+        QuizService.QuizKey key = new QuizService.QuizKey(topic, 1, difficulty);
+        return key.getTopic().toLowerCase(Locale.ROOT) + '\u0001' + key.getDifficulty();
+    }
+
+    // 64-bit FNV-1a; collisions are negligible at the sizes a bank reaches.
+    private static long fingerprint(String bucketKey, String promptKey) {
+        long hash = 0xcbf29ce484222325L;
+        String text = bucketKey + '\u0002' + promptKey;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private void closeQuietly() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing left to release.
+        }
+        channel = null;
+    }
+
+    /**
+     * File offsets of the questions for one topic and difficulty.
+     */
+    private static final class Bucket {
+        private long[] offsets = new long[16];
+        private int size;
+
+        void add(long offset) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            offsets[size++] = offset;
+        }
+
+        /**
+         * Picks {@code count} distinct offsets with Floyd's algorithm, which costs
+         * O(count) regardless of how many questions the bucket holds, then shuffles them
+         * so the quiz order is random as well.
+         */
+        long[] sample(int count) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Set<Integer> chosen = new HashSet<>(count * 2);
+            long[] picked = new long[count];
+            int next = 0;
+            for (int upper = size - count; upper < size; upper++) {
+                int candidate = random.nextInt(upper + 1);
+                int index = chosen.add(candidate) ? candidate : upper;
+                if (index == upper) {
+                    chosen.add(upper);
+                }
+                picked[next++] = offsets[index];
+            }
+            for (int i = picked.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                long swap = picked[i];
+                picked[i] = picked[j];
+                picked[j] = swap;
+            }
+            return picked;
+        }
+    }
+
+    /**
+     * Open-addressing set of prompt fingerprints; avoids boxing a Long per question.
+     * Zero is remapped so it can mark empty slots.
+     */
+    private static final class LongHashSet {
+        private long[] slots = new long[1024];
+        private int size;
+
+        boolean contains(long value) {
+            long key = value == 0 ? 1 : value;
+            int mask = slots.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                if (slots[i] == 0) {
+                    return false;
+                }
+                if (slots[i] == key) {
+                    return true;
+                }
+            }
+        }
+
+        boolean add(long value) {
+            long key = value == 0 ? 1 : value;
+            if ((size + 1) * 2 > slots.length) {
+                grow();
+            }
+            int mask = slots.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                if (slots[i] == 0) {
+                    slots[i] = key;
+                    size++;
+                    return true;
+                }
+                if (slots[i] == key) {
+                    return false;
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void grow() {
+            long[] old = slots;
+            slots = new long[old.length * 2];
+            int mask = slots.length - 1;
+            for (long key : old) {
+                if (key == 0) {
+                    continue;
+                }
+                int i = mix(key) & mask;
+                while (slots[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = key;
+            }
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9e3779b97f4a7c15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
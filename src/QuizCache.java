@@ -0,0 +1,328 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier cache for generated quizzes: a size-bounded in-memory LRU in front of a
+ * directory of JSON files under {@code user-data/} that survives restarts.
+ * Entries are keyed by normalized topic, question count and difficulty.
+ */
+final class QuizCache {
+
+    /** How cached quizzes are served; every policy still stores fresh responses. */
+    enum Policy {
+        /** Never serve cached quizzes. */
+        ALWAYS_FRESH,
+        /** Serve cached quizzes younger than the configured TTL. */
+        REUSE_WITHIN_TTL,
+        /** Serve any cached quiz regardless of age. */
+        PREFER_CACHED
+    }
+
+    private static final String DATA_DIRECTORY = "user-data";
+    private static final String CACHE_DIRECTORY = "quiz-cache";
+    private static final String ENTRY_SUFFIX = ".json";
+
+    private final Path directory;
+    private final int memoryCapacity;
+    private final int diskCapacity;
+    private final long ttlMillis;
+    private final Policy policy;
+    private final Map<QuizService.QuizKey, Entry> memory;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    QuizCache(Path directory, int memoryCapacity, int diskCapacity, long ttlMillis, Policy policy) {
+        this.directory = directory;
+        this.memoryCapacity = Math.max(0, memoryCapacity);
+        this.diskCapacity = Math.max(0, diskCapacity);
+        this.ttlMillis = ttlMillis;
+        this.policy = policy;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<QuizService.QuizKey, Entry> eldest) {
+                if (size() > QuizCache.this.memoryCapacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        if (this.diskCapacity > 0) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException ignored) {
+                // The memory tier keeps working even if the disk tier is unavailable.
+            }
+        }
+    }
+
+    static QuizCache fromSettings() {
+        return new QuizCache(
+                Paths.get(DATA_DIRECTORY, CACHE_DIRECTORY),
+                ClientSettings.intValue("cache.memoryEntries", 32),
+                ClientSettings.intValue("cache.diskEntries", 200),
+                ClientSettings.longValue("cache.ttlSeconds", 300) * 1000L,
+                ClientSettings.enumValue("cache.policy", Policy.REUSE_WITHIN_TTL)
+        );
+    }
+
+    /**
+     * Checks the memory tier only. Cheap enough to call on the EDT.
+     */
+    QuizService.QuizData lookupMemory(QuizService.QuizKey key) {
+        if (policy == Policy.ALWAYS_FRESH) {
+            return null;
+        }
+        Entry entry;
+        synchronized (memory) {
+            entry = memory.get(key);
+            if (entry != null && !isServable(entry.storedAt)) {
+                memory.remove(key);
+                evictions.incrementAndGet();
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            memoryHits.incrementAndGet();
+            return entry.quizData;
+        }
+        return null;
+    }
+
+    /**
+     * Checks the disk tier, promoting hits into memory. Counts a miss when neither
+     * tier can serve the key, so call it after {@link #lookupMemory} missed.
+     */
+    QuizService.QuizData lookupDisk(QuizService.QuizKey key) {
+        if (policy == Policy.ALWAYS_FRESH) {
+            misses.incrementAndGet();
+            return null;
+        }
+        QuizService.QuizData quizData = diskCapacity > 0 ? readEntry(key) : null;
+        if (quizData == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        diskHits.incrementAndGet();
+        return quizData;
+    }
+
+    /**
+     * Makes a freshly fetched quiz visible in the memory tier. Call before handing the
+     * quiz to waiters so an immediate repeat request hits.
+     */
+    void put(QuizService.QuizKey key, QuizService.QuizData quizData) {
+        remember(key, quizData, System.currentTimeMillis());
+    }
+
+    /**
+     * Writes a quiz to the disk tier. Does file I/O, so keep it off the EDT.
+     */
+    void persist(QuizService.QuizKey key, QuizService.QuizData quizData) {
+        if (diskCapacity > 0) {
+            writeEntry(key, quizData, System.currentTimeMillis());
+        }
+    }
+
+    Stats stats() {
+        return new Stats(memoryHits.get(), diskHits.get(), misses.get(), evictions.get());
+    }
+
+    private void remember(QuizService.QuizKey key, QuizService.QuizData quizData, long storedAt) {
+        if (memoryCapacity == 0) {
+            return;
+        }
+        synchronized (memory) {
+            memory.put(key, new Entry(quizData, storedAt));
+        }
+    }
+
+    private boolean isServable(long storedAt) {
+        return policy == Policy.PREFER_CACHED || System.currentTimeMillis() - storedAt <= ttlMillis;
+    }
+
+    private QuizService.QuizData readEntry(QuizService.QuizKey key) {
+        Path file = entryPath(key);
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException ex) {
+            return null;
+        }
+        try {
+            // Check age and identity from the index before binding any questions.
+            LazyJsonDocument.Node root = LazyJsonDocument.parse(bytes).root();
+            LazyJsonDocument.Node storedAtNode = root.get("storedAt");
+            Number storedAt = storedAtNode != null ? storedAtNode.asNumber() : null;
+            if (storedAt == null || !isServable(storedAt.longValue())) {
+                deleteQuietly(file);
+                evictions.incrementAndGet();
+                return null;
+            }
+            LazyJsonDocument.Node cacheKey = root.get("cacheKey");
+            if (cacheKey == null || !key.toString().equals(cacheKey.asString())) {
+                return null;
+            }
+            QuizService.QuizData quizData = QuizService.readQuizData(new JsonStreamReader(ByteBuffer.wrap(bytes)));
+            remember(key, quizData, storedAt.longValue());
+            return quizData;
+        } catch (IOException | SimpleJsonParser.JsonParseException | QuizService.QuizServiceException ex) {
+            deleteQuietly(file);
+            return null;
+        }
+    }
+
+    private void writeEntry(QuizService.QuizKey key, QuizService.QuizData quizData, long storedAt) {
+        byte[] bytes;
+        try (JsonWriter writer = JsonWriter.acquire()) {
+            writer.beginObject()
+                    .name("cacheKey").value(key.toString())
+                    .name("storedAt").value(storedAt)
+                    .name("quizId").value(quizData.getQuizId())
+                    .name("topic").value(quizData.getTopic())
+                    .name("difficulty").value(quizData.getDifficulty())
+                    .name("questionCount").value(quizData.getQuestionCount())
+                    .name("questions").beginArray();
+            for (QuizQuestion question : quizData.getQuestions()) {
+                writer.beginObject()
+                        .name("question").value(question.getPrompt())
+                        .name("options").beginArray();
+                for (String option : question.getOptions()) {
+                    writer.value(option);
+                }
+                writer.endArray()
+                        .name("answerIndex").value(question.getCorrectIndex())
+                        .endObject();
+            }
+            writer.endArray().endObject();
+            bytes = writer.toByteArray();
+        }
+        Path file = entryPath(key);
+        Path temp = null;
+        try {
+            // A temp file per write: two threads may persist the same key at once.
+            temp = Files.createTempFile(file.getParent(), file.getFileName() + ".", ".tmp");
+            Files.write(temp, bytes);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            if (temp != null) {
+                deleteQuietly(temp);
+            }
+            return;
+        }
+        trimDisk();
+    }
+
+    private void trimDisk() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        } catch (IOException ex) {
+            return;
+        }
+        if (files.size() <= diskCapacity) {
+            return;
+        }
+        files.sort(Comparator.comparingLong(QuizCache::lastModified));
+        for (int i = 0; i < files.size() - diskCapacity; i++) {
+            deleteQuietly(files.get(i));
+            evictions.incrementAndGet();
+        }
+    }
+
+    private Path entryPath(QuizService.QuizKey key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] encoded = digest.digest(key.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(40);
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((encoded[i] >> 4) & 0xf, 16))
+                        .append(Character.forDigit(encoded[i] & 0xf, 16));
+            }
+            return directory.resolve(hex.append(ENTRY_SUFFIX).toString());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Missing SHA-256 algorithm", ex);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException ex) {
+            return 0L;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // A stale file is simply overwritten or evicted later.
+        }
+    }
+
+    private static final class Entry {
+        final QuizService.QuizData quizData;
+        final long storedAt;
+
+        Entry(QuizService.QuizData quizData, long storedAt) {
+            this.quizData = quizData;
+            this.storedAt = storedAt;
+        }
+    }
+
+    static final class Stats {
+        private final long memoryHits;
+        private final long diskHits;
+        private final long misses;
+        private final long evictions;
+
+        Stats(long memoryHits, long diskHits, long misses, long evictions) {
+            this.memoryHits = memoryHits;
+            this.diskHits = diskHits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public long getMemoryHits() {
+            return memoryHits;
+        }
+
+        public long getDiskHits() {
+            return diskHits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        @Override
+        public String toString() {
+            return "memoryHits=" + memoryHits + ", diskHits=" + diskHits
+                    + ", misses=" + misses + ", evictions=" + evictions;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Assembles a quiz larger than one backend generation call allows. The quiz is split
+ * into chunks that are requested in parallel, so the wait is roughly that of the
+ * slowest chunk. Chunks are merged in order, and prompts already seen are dropped.
+ * Questions missing after a round, whether from duplicates or from a chunk that
+ * failed, are requested again in a smaller top-up round.
+ */
+final class QuizFanOut {
+
+    /**
+     * Requests one chunk. {@code part} is 1-based across all rounds and {@code parts} is
+     * the number of chunks planned so far, so the backend can vary its questions.
+     */
+    interface ChunkFetcher {
+        CompletableFuture<QuizService.QuizData> fetch(int questionCount, int part, int parts);
+    }
+
+    private final QuizService.QuizKey key;
+    private final int chunkSize;
+    private final int minChunkSize;
+    private final int topUpRounds;
+    private final ChunkFetcher fetcher;
+    private final Consumer<QuizQuestion> onQuestion;
+    private final CompletableFuture<QuizService.QuizData> result = new CompletableFuture<>();
+
+    // Guarded by this.
+    private final List<QuizQuestion> accepted = new ArrayList<>();
+    private final Set<String> seenPrompts = new HashSet<>();
+    private final List<CompletableFuture<QuizService.QuizData>> running = new ArrayList<>();
+    private List<QuizService.QuizData> roundResults;
+    private int merged;
+    private int remaining;
+    private int round;
+    private int partsPlanned;
+    private int questionsReceived;
+    private Throwable lastFailure;
+
+    QuizFanOut(QuizService.QuizKey key, int chunkSize, int minChunkSize, int topUpRounds,
+               ChunkFetcher fetcher, Consumer<QuizQuestion> onQuestion) {
+        this.key = key;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.minChunkSize = Math.max(1, Math.min(minChunkSize, this.chunkSize));
+        this.topUpRounds = Math.max(0, topUpRounds);
+        this.fetcher = fetcher;
+        this.onQuestion = onQuestion;
+    }
+
+    /**
+     * Starts the first round. Cancelling the returned future cancels every chunk still
+     * in flight.
+     */
+    CompletableFuture<QuizService.QuizData> start() {
+        result.whenComplete((quizData, failure) -> {
+            if (result.isCancelled()) {
+                cancelRunning();
+            }
+        });
+        synchronized (this) {
+            startRound(key.getQuestionCount());
+        }
+        return result;
+    }
+
+    private void startRound(int needed) {
+        int parts = (needed + chunkSize - 1) / chunkSize;
+        int base = needed / parts;
+        int extra = needed % parts;
+        int firstPart = partsPlanned + 1;
+        partsPlanned += parts;
+        roundResults = new ArrayList<>(parts);
+        merged = 0;
+        remaining = parts;
+        running.clear();
+        for (int i = 0; i < parts; i++) {
+            roundResults.add(null);
+        }
+        int startedRound = round;
+        for (int i = 0; i < parts; i++) {
+            // The backend has a lower bound too; surplus questions are trimmed when merging.
+            int size = Math.max(minChunkSize, base + (i < extra ? 1 : 0));
+            int index = i;
+            CompletableFuture<QuizService.QuizData> chunk = fetcher.fetch(size, firstPart + i, partsPlanned);
+            running.add(chunk);
+            chunk.whenComplete((quizData, failure) -> onChunk(startedRound, index, quizData, failure));
+        }
+    }
+
+    private synchronized void onChunk(int chunkRound, int index, QuizService.QuizData quizData, Throwable failure) {
+        if (result.isDone() || chunkRound != round) {
+            return;
+        }
+        if (failure != null) {
+            lastFailure = failure;
+            // An empty placeholder keeps later chunks mergeable; the gap is refilled next round.
+            quizData = new QuizService.QuizData(null, key.getTopic(), key.getDifficulty(), 0, List.of());
+        }
+        roundResults.set(index, quizData);
+        remaining--;
+        // Merge in chunk order so questions handed out early keep their final positions.
+        while (merged < roundResults.size() && roundResults.get(merged) != null) {
+            mergeChunk(roundResults.get(merged));
+            merged++;
+        }
+        if (remaining > 0) {
+            return;
+        }
+        int missing = key.getQuestionCount() - accepted.size();
+        if (missing <= 0) {
+            result.complete(new QuizService.QuizData(null, key.getTopic(), key.getDifficulty(),
+                    accepted.size(), new ArrayList<>(accepted)));
+        } else if (round < topUpRounds) {
+            round++;
+            startRound(withHeadroom(missing));
+        } else if (lastFailure != null) {
+            result.completeExceptionally(lastFailure);
+        } else {
+            result.completeExceptionally(new QuizService.QuizServiceException("Only " + accepted.size()
+                    + " distinct questions were generated out of " + key.getQuestionCount() + " requested"));
+        }
+    }
+
+    /**
+     * Scales a top-up by the duplicate rate seen so far (at most doubling it), so a
+     * repetitive topic still fills up within the allowed rounds.
+     */
+    private int withHeadroom(int missing) {
+        if (accepted.isEmpty() || questionsReceived <= accepted.size()) {
+            return missing;
+        }
+        double perAccepted = (double) questionsReceived / accepted.size();
+        return (int) Math.min(2L * missing, (long) Math.ceil(missing * perAccepted));
+    }
+
+    private void mergeChunk(QuizService.QuizData chunk) {
+        questionsReceived += chunk.getQuestions().size();
+        for (QuizQuestion question : chunk.getQuestions()) {
+            if (accepted.size() >= key.getQuestionCount()) {
+                return;
+            }
+            if (seenPrompts.add(question.promptKey())) {
+                accepted.add(question);
+                onQuestion.accept(question);
+            }
+        }
+    }
+
+    private void cancelRunning() {
+        List<CompletableFuture<QuizService.QuizData>> toCancel;
+        synchronized (this) {
+            toCancel = new ArrayList<>(running);
+        }
+        for (CompletableFuture<QuizService.QuizData> chunk : toCancel) {
+            chunk.cancel(true);
+        }
+    }
+}
@@ -1,25 +1,137 @@
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Very small text based storage that keeps quiz summaries per user.
- * Lines are stored as: username|timestamp|topic|difficulty|correct|total|score
+ * Keeps quiz summaries per user in a binary log of fixed-width records. Each record
+ * holds an epoch-millis timestamp, dictionary ids for the user, topic and difficulty,
+ * and the score fields; the strings themselves live once each in a separate dictionary
+ * file. The log is read through a {@link MappedByteBuffer}, and a user's history is read
+ * from just that user's records, found through a per-user index of record numbers.
+ * <p>
+ * Results are written behind the caller by a single writer thread that keeps both
+ * files open. Records queued while it is busy go out together as one write, and are
+ * synced according to {@link Durability}. Queued records are already visible to
+ * {@link #loadPage}. Callers block only when the queue is full, and {@link #close()}
+ * writes out whatever is still queued.
+ * <p>
+ * Per-user {@link HistoryStats} are updated as results are queued. They are
+ * checkpointed to {@code history-stats.bin}, and the per-user index to
+ * {@code history-users.bin}, each with the number of log records it covers, so opening
+ * the store only walks records written after the last checkpoint.
+ * <p>
+ * History is read a page at a time, newest first. A page cursor is a record number in
+ * the log; queued records get their number when they are queued, so a cursor stays
+ * valid while they are being written.
+ * <p>
+ * The writer thread opens the store as soon as it is constructed, so neither loading
+ * the files nor migrating the pipe-delimited {@code history.txt} of earlier versions
+ * (kept as {@code history.txt.migrated}) runs on the caller's thread. Reads and writes
+ * wait for the open; {@link #whenOpen()} lets the EDT render once it is done instead.
  */
 final class QuizHistoryStore {
 
+    /** When written records are synced to disk. */
+    enum Durability {
+        /** Never; the operating system writes them out in its own time. */
+        NONE,
+        /** After every batch. */
+        BATCH,
+        /** At most once per {@code quizmaster.history.syncMillis}. */
+        PERIODIC
+    }
+
     private static final String DATA_DIRECTORY = "user-data";
-    private static final String HISTORY_FILE = "history.txt";
+    private static final String LOG_FILE = "history.bin";
+    private static final String DICTIONARY_FILE = "history.dict";
+    private static final String STATS_FILE = "history-stats.bin";
+    private static final String USERS_FILE = "history-users.bin";
+    private static final String LEGACY_FILE = "history.txt";
+    private static final String LEGACY_INDEX_FILE = "history.idx";
+    private static final String MIGRATED_SUFFIX = ".migrated";
+
+    private static final int LOG_MAGIC = 0x5148424e; // "QHBN"
+    private static final int LOG_VERSION = 1;
+    private static final int USERS_MAGIC = 0x51485558; // "QHUX"
+    private static final int USERS_VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    // Record layout, in bytes from the start of the record.
+    static final int RECORD_BYTES = 32;
+    static final int TIMESTAMP = 0;
+    static final int USER = 8;
+    static final int TOPIC = 12;
+    static final int DIFFICULTY = 16;
+    static final int CORRECT = 20;
+    static final int TOTAL = 24;
+    static final int SCORE = 28;
+
+    private static final Durability DURABILITY = ClientSettings.enumValue("history.durability", Durability.BATCH);
+    private static final long SYNC_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Math.max(1, ClientSettings.longValue("history.syncMillis", 1000)));
+    private static final int QUEUE_CAPACITY = Math.max(1, ClientSettings.intValue("history.queueCapacity", 1024));
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+    // Records written between checkpoints; the rest are walked in the log on open.
+    private static final int CHECKPOINT_RECORDS = 1000;
+    /** Cursor for the first page of a user's history. */
+    static final long NEWEST = Long.MAX_VALUE;
+    // Wakes the writer so it notices close().
+    private static final Pending WAKE_UP = new Pending(null, null, null, 0, 0, 0, 0);
 
-    private final Path historyPath;
+    private final Path logPath;
+    private final Path dictionaryPath;
+    private final Path statsPath;
+    private final Path usersPath;
+    private final Path legacyPath;
+    private final Path legacyIndexPath;
+
+    // Set once the writer thread has tried to open the store; until then only it touches
+    // the state below, and afterwards that is guarded by this.
+    private boolean openAttempted;
+    private boolean opened;
+    private final CompletableFuture<Void> opening = new CompletableFuture<>();
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private RecordList[] recordsByUser = new RecordList[0];
+    private int recordCount;
+    // Number the next queued record will get; records from recordCount on are still pending.
+    private int nextNumber;
+    private MappedByteBuffer mapped;
+    private int mappedRecords;
+    // Queued but not yet in the log, oldest first.
+    private final List<Pending> pending = new ArrayList<>();
+    private boolean closed;
+    private boolean writerDone;
+    private HistoryStats stats = new HistoryStats();
+    private long checkpointedRecords;
+
+    private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    // Confined to the writer thread.
+    private FileChannel logChannel;
+    private FileChannel dictionaryChannel;
+    private boolean unsynced;
+    private long lastSyncAt = System.nanoTime();
 
     QuizHistoryStore() {
         Path dir = Paths.get(DATA_DIRECTORY);
@@ -28,57 +140,744 @@ final class QuizHistoryStore {
         } catch (IOException ignored) {
             // Soft-fail makes the app usable even if persistence cannot be created.
         }
-        this.historyPath = dir.resolve(HISTORY_FILE);
+        this.logPath = dir.resolve(LOG_FILE);
+        this.dictionaryPath = dir.resolve(DICTIONARY_FILE);
+        this.statsPath = dir.resolve(STATS_FILE);
+        this.usersPath = dir.resolve(USERS_FILE);
+        this.legacyPath = dir.resolve(LEGACY_FILE);
+        this.legacyIndexPath = dir.resolve(LEGACY_INDEX_FILE);
+        Thread writer = new Thread(this::runWriter, "history-writer");
+        writer.setDaemon(true);
+        writer.start();
     }
 
-    synchronized void recordResult(String username, String topic, String difficulty, int correct, int total, int scorePercent) {
+    /**
+     * Queues a finished quiz for the writer thread. Blocks only while the store is still
+     * opening, or while {@code quizmaster.history.queueCapacity} results are already
+     * waiting to be written.
+     * Queueing and numbering happen under the monitor, so records reach the log in the
+     * order of their numbers.
+     */
+    void recordResult(String username, String topic, String difficulty, int correct, int total, int scorePercent) {
         String cleanUser = sanitize(username);
         if (cleanUser.isEmpty() || total <= 0) {
             return;
         }
-        String line = String.join("|",
-                escape(cleanUser),
-                Instant.now().toString(),
-                escape(topic),
-                escape(difficulty),
-                Integer.toString(correct),
-                Integer.toString(total),
-                Integer.toString(scorePercent)
-        );
+        Pending record = new Pending(cleanUser, sanitize(topic), sanitize(difficulty),
+                System.currentTimeMillis(), correct, total, scorePercent);
+        synchronized (this) {
+            if (!awaitOpen()) {
+                return;
+            }
+            while (!closed && !queue.offer(record)) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (closed) {
+                return;
+            }
+            record.number = nextNumber++;
+            pending.add(record);
+            stats.add(record.user, record.topic, record.difficulty, record.timestamp, record.scorePercent);
+        }
+    }
+
+    /**
+     * Returns the user's statistics, including results that are still queued. Costs the
+     * same however long the user's history is.
+     */
+    synchronized HistoryStats.Summary statsFor(String username) {
+        String cleanUser = sanitize(username);
+        if (cleanUser.isEmpty() || !awaitOpen()) {
+            return HistoryStats.Summary.EMPTY;
+        }
+        return stats.summary(cleanUser, System.currentTimeMillis());
+    }
+
+    /**
+     * Completes once the store is open, or could not be opened; reads then return
+     * without waiting. Completed on the writer thread.
+     */
+    CompletableFuture<Void> whenOpen() {
+        return opening;
+    }
+
+    /**
+     * Writes out every queued result, syncs both files and stops the writer. Waits a
+     * few seconds at most; meant for application shutdown.
+     */
+    void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        // If the queue is full the writer is busy anyway and sees the flag after this batch.
+        queue.offer(WAKE_UP);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT_MILLIS);
+        synchronized (this) {
+            long remaining;
+            while (!writerDone && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void runWriter() {
+        boolean success = open();
+        synchronized (this) {
+            openAttempted = true;
+            opened = success;
+            notifyAll();
+        }
+        opening.complete(null);
+        List<Pending> batch = new ArrayList<>();
+        while (true) {
+            try {
+                Pending first;
+                if (DURABILITY == Durability.PERIODIC && unsynced) {
+                    first = queue.poll(Math.max(0, lastSyncAt + SYNC_NANOS - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } else {
+                    first = queue.take();
+                }
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                    synchronized (this) {
+                        // Room in the queue for callers waiting in recordResult.
+                        notifyAll();
+                    }
+                }
+            } catch (InterruptedException ex) {
+                // Only close() should stop the writer; carry on.
+            }
+            batch.remove(WAKE_UP);
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+            boolean stopping;
+            synchronized (this) {
+                stopping = closed && queue.isEmpty();
+            }
+            checkpointStats(stopping);
+            if ((stopping && DURABILITY != Durability.NONE) || (DURABILITY == Durability.PERIODIC && unsynced
+                    && System.nanoTime() - lastSyncAt >= SYNC_NANOS)) {
+                sync();
+            }
+            if (stopping) {
+                closeChannels();
+                synchronized (this) {
+                    writerDone = true;
+                    notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Appends a batch with one write per file. Ids are assigned under the monitor, and
+     * the disk writes happen outside it so readers are not held up by them.
+     */
+    private void writeBatch(List<Pending> batch) {
+        ByteBuffer records = ByteBuffer.allocate(batch.size() * RECORD_BYTES);
+        int[] users = new int[batch.size()];
+        int dictionaryFrom;
+        int firstNumber;
+        ByteBuffer dictionary;
+        synchronized (this) {
+            if (!opened) {
+                // History is a convenience feature; these results are dropped.
+                dropPending(batch);
+                return;
+            }
+            dictionaryFrom = strings.size();
+            for (int i = 0; i < batch.size(); i++) {
+                Pending record = batch.get(i);
+                users[i] = intern(record.user);
+                records.putLong(record.timestamp)
+                        .putInt(users[i])
+                        .putInt(intern(record.topic))
+                        .putInt(intern(record.difficulty))
+                        .putInt(record.correct)
+                        .putInt(record.total)
+                        .putInt(record.scorePercent);
+            }
+            dictionary = encodeStrings(dictionaryFrom);
+            firstNumber = batch.get(0).number;
+        }
+        records.flip();
+        boolean dictionaryWritten = false;
+        long dictionarySize = -1;
         try {
-            Files.writeString(
-                    historyPath,
-                    line + System.lineSeparator(),
-                    StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.APPEND
-            );
+            if (dictionaryChannel == null) {
+                dictionaryChannel = FileChannel.open(dictionaryPath, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                logChannel = FileChannel.open(logPath, StandardOpenOption.WRITE);
+            }
+            if (dictionary.hasRemaining()) {
+                dictionarySize = dictionaryChannel.size();
+                writeFully(dictionaryChannel, dictionary, dictionarySize);
+                if (DURABILITY != Durability.NONE) {
+                    // New strings must be on disk before a record that refers to them.
+                    dictionaryChannel.force(false);
+                }
+            }
+            dictionaryWritten = true;
+            writeFully(logChannel, records, HEADER_BYTES + (long) firstNumber * RECORD_BYTES);
+            unsynced = true;
+            if (DURABILITY == Durability.BATCH) {
+                sync();
+            }
+        } catch (IOException ex) {
+            closeChannels();
+            // Whatever part of the batch reached the files would otherwise come back on the
+            // next open, even though the batch is dropped here.
+            try {
+                truncate(logPath, HEADER_BYTES + (long) firstNumber * RECORD_BYTES);
+                if (!dictionaryWritten && dictionarySize >= 0) {
+                    truncate(dictionaryPath, dictionarySize);
+                }
+            } catch (IOException ignored) {
+                // Leftover records are overwritten by the next batch written to the log.
+            }
+            synchronized (this) {
+                if (!dictionaryWritten) {
+                    for (int i = strings.size() - 1; i >= dictionaryFrom; i--) {
+                        ids.remove(strings.remove(i));
+                    }
+                }
+                dropPending(batch);
+            }
+            return;
+        }
+        synchronized (this) {
+            for (int i = 0; i < users.length; i++) {
+                addRecord(firstNumber + i, users[i]);
+            }
+            recordCount = firstNumber + users.length;
+            pending.removeAll(new HashSet<>(batch));
+        }
+    }
+
+    /**
+     * Forgets records that could not be written and renumbers the ones queued after
+     * them, so the log stays free of gaps. The statistics already counted the dropped
+     * records, so they are rebuilt.
+     */
+    private void dropPending(List<Pending> batch) {
+        pending.removeAll(new HashSet<>(batch));
+        nextNumber = recordCount;
+        stats = new HistoryStats();
+        replayStats();
+        for (Pending record : pending) {
+            record.number = nextNumber++;
+            stats.add(record.user, record.topic, record.difficulty, record.timestamp, record.scorePercent);
+        }
+    }
+
+    /**
+     * Writes the statistics and the per-user index once {@link #CHECKPOINT_RECORDS}
+     * records were logged since the last checkpoint, or whenever they changed if
+     * {@code closing}. Only taken while nothing is queued, so both cover exactly the
+     * records in the log, and only after those records are synced.
+     */
+    private void checkpointStats(boolean closing) {
+        byte[] checkpoint;
+        ByteBuffer users;
+        long covered;
+        synchronized (this) {
+            if (!opened || !pending.isEmpty() || recordCount == checkpointedRecords
+                    || (!closing && recordCount - checkpointedRecords < CHECKPOINT_RECORDS)) {
+                return;
+            }
+            covered = recordCount;
+            users = encodeUsers();
+            try {
+                checkpoint = stats.toCheckpoint();
+            } catch (RuntimeException ex) {
+                // Skipped until another CHECKPOINT_RECORDS are logged; the log is replayed
+                // from the previous checkpoint meanwhile.
+                checkpointedRecords = covered;
+                return;
+            }
+        }
+        if (DURABILITY != Durability.NONE) {
+            sync();
+            if (unsynced) {
+                // A checkpoint must not cover records a crash could still take back.
+                return;
+            }
+        }
+        try {
+            replaceFile(usersPath, users);
+            replaceFile(statsPath, ByteBuffer.wrap(checkpoint));
+            synchronized (this) {
+                checkpointedRecords = covered;
+            }
         } catch (IOException ignored) {
-            // History is a convenience feature; failure should not crash the app.
+            // The previous checkpoints stay valid; more of the log is walked on open.
         }
     }
 
-    synchronized List<QuizRecord> loadForUser(String username) {
-        String cleanUser = sanitize(username);
-        if (cleanUser.isEmpty() || !Files.exists(historyPath)) {
-            return Collections.emptyList();
+    /**
+     * Writes {@code contents} to a temporary file and moves it over {@code file}, so a
+     * crash leaves either the old contents or the new ones.
+     */
+    private static void replaceFile(Path file, ByteBuffer contents) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, contents, 0);
         }
-        List<QuizRecord> records = new ArrayList<>();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The per-user index: every user id's record count followed by its record numbers,
+     * after a header with the number of log records and dictionary strings it covers.
+     */
+    private ByteBuffer encodeUsers() {
+        ByteBuffer buffer = ByteBuffer.allocate(5 * Integer.BYTES
+                + (recordsByUser.length + recordCount) * Integer.BYTES);
+        buffer.putInt(USERS_MAGIC).putInt(USERS_VERSION).putInt(recordCount).putInt(strings.size())
+                .putInt(recordsByUser.length);
+        for (RecordList records : recordsByUser) {
+            int size = records == null ? 0 : records.size;
+            buffer.putInt(size);
+            if (size > 0) {
+                buffer.asIntBuffer().put(records.numbers, 0, size);
+                buffer.position(buffer.position() + size * Integer.BYTES);
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Loads the per-user index and returns how many log records it covers, or 0 when
+     * there is none that fits the first {@code records} records of the log and a
+     * dictionary of {@code dictionarySize} strings.
+     */
+    private int loadUsers(int records, int dictionarySize) {
+        ByteBuffer buffer;
         try {
-            List<String> lines = Files.readAllLines(historyPath, StandardCharsets.UTF_8);
-            for (String line : lines) {
-                QuizRecord record = parseLine(line);
-                if (record != null && cleanUser.equals(record.username)) {
-                    records.add(record);
+            buffer = ByteBuffer.wrap(Files.readAllBytes(usersPath));
+        } catch (IOException ignored) {
+            // No index yet; rebuilt from the log.
+            return 0;
+        }
+        if (buffer.remaining() < 5 * Integer.BYTES || buffer.getInt() != USERS_MAGIC
+                || buffer.getInt() != USERS_VERSION) {
+            return 0;
+        }
+        int covered = buffer.getInt();
+        int coveredStrings = buffer.getInt();
+        int users = buffer.getInt();
+        // An index ahead of the log or the dictionary covers records that were lost or
+        // replaced. The records it covers only refer to the strings it covers.
+        if (covered < 0 || covered > records || coveredStrings > dictionarySize
+                || users < 0 || users > coveredStrings) {
+            return 0;
+        }
+        RecordList[] loaded = new RecordList[users];
+        long total = 0;
+        for (int user = 0; user < users; user++) {
+            int size = buffer.remaining() >= Integer.BYTES ? buffer.getInt() : -1;
+            if (size < 0 || size > buffer.remaining() / Integer.BYTES) {
+                return 0;
+            }
+            if (size == 0) {
+                continue;
+            }
+            RecordList list = new RecordList(size);
+            buffer.asIntBuffer().get(list.numbers, 0, size);
+            buffer.position(buffer.position() + size * Integer.BYTES);
+            list.size = size;
+            for (int i = 0; i < size; i++) {
+                if (list.numbers[i] >= covered || (i > 0 && list.numbers[i] <= list.numbers[i - 1])) {
+                    return 0;
+                }
+            }
+            loaded[user] = list;
+            total += size;
+        }
+        if (total != covered || buffer.hasRemaining()) {
+            return 0;
+        }
+        recordsByUser = loaded;
+        return covered;
+    }
+
+    /**
+     * Starts from the checkpoint when it still matches the log, and replays the records
+     * logged after it. A sequential walk over the mapping, without per-record
+     * allocation.
+     */
+    private void loadStats() {
+        HistoryStats loaded = null;
+        try {
+            loaded = HistoryStats.fromCheckpoint(Files.readAllBytes(statsPath));
+        } catch (IOException ignored) {
+            // No checkpoint yet; rebuilt from the log.
+        }
+        // A checkpoint ahead of the log belongs to records that were lost or replaced.
+        stats = loaded != null && loaded.recordsCovered() <= recordCount ? loaded : new HistoryStats();
+        // The next checkpoint is due from the older of the two, so both get rewritten.
+        checkpointedRecords = loaded == stats ? Math.min(checkpointedRecords, stats.recordsCovered()) : -1;
+        replayStats();
+    }
+
+    private void replayStats() {
+        ByteBuffer log = recordCount == 0 ? null : mappedLog(recordCount - 1);
+        if (log == null) {
+            return;
+        }
+        for (int number = (int) stats.recordsCovered(); number < recordCount; number++) {
+            int base = HEADER_BYTES + number * RECORD_BYTES;
+            stats.add(strings.get(log.getInt(base + USER)),
+                    strings.get(log.getInt(base + TOPIC)),
+                    strings.get(log.getInt(base + DIFFICULTY)),
+                    log.getLong(base + TIMESTAMP),
+                    log.getInt(base + SCORE));
+        }
+    }
+
+    private void sync() {
+        lastSyncAt = System.nanoTime();
+        if (!unsynced || logChannel == null) {
+            return;
+        }
+        try {
+            logChannel.force(false);
+            unsynced = false;
+        } catch (IOException ignored) {
+            // Retried with the next sync; the data itself was written.
+        }
+    }
+
+    private void closeChannels() {
+        for (FileChannel channel : new FileChannel[] {logChannel, dictionaryChannel}) {
+            if (channel == null) {
+                continue;
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Nothing left to do with it.
+            }
+        }
+        logChannel = null;
+        dictionaryChannel = null;
+    }
+
+    /**
+     * Returns up to {@code limit} of the user's quizzes older than {@code beforeCursor},
+     * newest first. Pass {@link #NEWEST} for the first page and {@link Page#getNextCursor()}
+     * for the ones after it. The cost depends on the page size, not on how much history
+     * the user has.
+     */
+    synchronized Page loadPage(String username, long beforeCursor, int limit) {
+        String cleanUser = sanitize(username);
+        if (cleanUser.isEmpty() || limit <= 0 || !awaitOpen()) {
+            return Page.EMPTY;
+        }
+        List<QuizRecord> result = new ArrayList<>(Math.min(limit, 256));
+        long lastNumber = -1;
+        boolean more = false;
+        // Queued records are newer than everything in the log.
+        for (int i = pending.size() - 1; i >= 0 && !more; i--) {
+            Pending record = pending.get(i);
+            if (record.number >= beforeCursor || !record.user.equals(cleanUser)) {
+                continue;
+            }
+            if (result.size() == limit) {
+                more = true;
+            } else {
+                result.add(record.toQuizRecord());
+                lastNumber = record.number;
+            }
+        }
+        Integer userId = ids.get(cleanUser);
+        RecordList records = userId == null || userId >= recordsByUser.length ? null : recordsByUser[userId];
+        if (!more && records != null) {
+            // The user's newest record below the cursor; numbers are ascending.
+            int from = Arrays.binarySearch(records.numbers, 0, records.size,
+                    (int) Math.min(beforeCursor, Integer.MAX_VALUE));
+            from = (from >= 0 ? from : -from - 1) - 1;
+            ByteBuffer log = from >= 0 ? mappedLog(records.numbers[from]) : null;
+            if (log != null) {
+                for (; from >= 0 && result.size() < limit; from--) {
+                    result.add(readRecord(log, records.numbers[from]));
+                    lastNumber = records.numbers[from];
                 }
+                more = from >= 0;
+            }
+        }
+        return new Page(result, more ? lastNumber : -1);
+    }
+
+    private QuizRecord readRecord(ByteBuffer log, int number) {
+        int base = HEADER_BYTES + number * RECORD_BYTES;
+        QuizRecord record = new QuizRecord();
+        record.timestamp = log.getLong(base + TIMESTAMP);
+        record.username = strings.get(log.getInt(base + USER));
+        record.topic = strings.get(log.getInt(base + TOPIC));
+        record.difficulty = strings.get(log.getInt(base + DIFFICULTY));
+        record.correctCount = log.getInt(base + CORRECT);
+        record.total = log.getInt(base + TOTAL);
+        record.scorePercent = log.getInt(base + SCORE);
+        return record;
+    }
+
+    /**
+     * Returns a mapping of the log that covers record {@code number}, mapping the file
+     * again if records were appended since it was last mapped.
+     */
+    private ByteBuffer mappedLog(int number) {
+        if (number >= mappedRecords) {
+            try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES + (long) recordCount * RECORD_BYTES);
+                mappedRecords = recordCount;
+            } catch (IOException ignored) {
+                return null;
             }
+        }
+        return mapped;
+    }
+
+    /**
+     * Waits, under the monitor, until the writer thread has tried to open the store, and
+     * returns whether it succeeded.
+     */
+    private boolean awaitOpen() {
+        while (!openAttempted) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return opened;
+    }
+
+    /**
+     * Migrates {@code history.txt} if there is no log yet and loads the files. Runs on
+     * the writer thread before anything else can reach the state it loads. History stays
+     * unavailable for the session when it fails.
+     */
+    private boolean open() {
+        try {
+            if (!Files.exists(logPath) && Files.exists(legacyPath)) {
+                migrateLegacy();
+            }
+            loadDictionary();
+            openLog();
+            loadStats();
         } catch (IOException ignored) {
-            return Collections.emptyList();
+            strings.clear();
+            ids.clear();
+            recordsByUser = new RecordList[0];
+            recordCount = 0;
+            nextNumber = 0;
+            stats = new HistoryStats();
+            return false;
+        }
+        return true;
+    }
+
+    private void loadDictionary() throws IOException {
+        byte[] contents;
+        try {
+            contents = Files.readAllBytes(dictionaryPath);
+        } catch (NoSuchFileException ex) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(contents);
+        while (buffer.remaining() >= Short.BYTES) {
+            int length = Short.toUnsignedInt(buffer.getShort(buffer.position()));
+            if (buffer.remaining() < Short.BYTES + length) {
+                break;
+            }
+            String value = new String(contents, buffer.position() + Short.BYTES, length, StandardCharsets.UTF_8);
+            ids.put(value, strings.size());
+            strings.add(value);
+            buffer.position(buffer.position() + Short.BYTES + length);
+        }
+        if (buffer.hasRemaining()) {
+            // An entry torn by a crash; later entries must not be appended after it.
+            truncate(dictionaryPath, buffer.position());
+        }
+    }
+
+    /**
+     * Checks the log header, drops a torn record at the end, and finds every user's
+     * records: from the per-user index where it covers the log, and by walking the user
+     * column of the mapped log after that.
+     */
+    private void openLog() throws IOException {
+        long size;
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            size = channel.size();
+            if (size < HEADER_BYTES) {
+                channel.truncate(0);
+                writeFully(channel, ByteBuffer.allocate(HEADER_BYTES)
+                        .putInt(LOG_MAGIC).putInt(LOG_VERSION).putInt(RECORD_BYTES).flip(), 0);
+                size = HEADER_BYTES;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // Read the whole header.
+            }
+            if (header.getInt(0) != LOG_MAGIC || header.getInt(4) != LOG_VERSION || header.getInt(8) != RECORD_BYTES) {
+                throw new IOException("Not a quiz history log: " + logPath);
+            }
+            long records = (size - HEADER_BYTES) / RECORD_BYTES;
+            if (records > Integer.MAX_VALUE / RECORD_BYTES) {
+                throw new IOException("Quiz history log is too large: " + logPath);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES + records * RECORD_BYTES);
+            mappedRecords = (int) records;
+        }
+        int dictionarySize = strings.size();
+        recordsByUser = new RecordList[dictionarySize];
+        int valid = loadUsers(mappedRecords, dictionarySize);
+        checkpointedRecords = valid;
+        for (int number = valid; number < mappedRecords; number++) {
+            int base = HEADER_BYTES + number * RECORD_BYTES;
+            int user = mapped.getInt(base + USER);
+            if (!isId(user, dictionarySize) || !isId(mapped.getInt(base + TOPIC), dictionarySize)
+                    || !isId(mapped.getInt(base + DIFFICULTY), dictionarySize)) {
+                // Refers to strings lost with a torn dictionary entry.
+                break;
+            }
+            addRecord(number, user);
+            valid++;
+        }
+        recordCount = valid;
+        nextNumber = valid;
+        long validSize = HEADER_BYTES + (long) valid * RECORD_BYTES;
+        if (validSize != size) {
+            mappedRecords = valid;
+            try {
+                truncate(logPath, validSize);
+            } catch (IOException ignored) {
+                // Some platforms refuse to truncate a mapped file. New records are written
+                // at the end of the valid ones, overwriting the torn tail anyway.
+            }
         }
-        records.sort(Comparator.comparing((QuizRecord r) -> r.timestamp).reversed());
-        return records;
     }
 
+    private static boolean isId(int id, int dictionarySize) {
+        return id >= 0 && id < dictionarySize;
+    }
+
+    private void addRecord(int number, int user) {
+        if (user >= recordsByUser.length) {
+            recordsByUser = Arrays.copyOf(recordsByUser, Math.max(user + 1, recordsByUser.length * 2));
+        }
+        RecordList records = recordsByUser[user];
+        if (records == null) {
+            records = new RecordList();
+            recordsByUser[user] = records;
+        }
+        records.add(number);
+    }
+
+    private int intern(String value) {
+        String stored = storable(value);
+        Integer id = ids.get(stored);
+        if (id == null) {
+            id = strings.size();
+            ids.put(stored, id);
+            strings.add(stored);
+        }
+        return id;
+    }
+
+    private ByteBuffer encodeStrings(int from) {
+        List<byte[]> encoded = new ArrayList<>(strings.size() - from);
+        int size = 0;
+        for (int i = from; i < strings.size(); i++) {
+            byte[] bytes = strings.get(i).getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            size += Short.BYTES + bytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] bytes : encoded) {
+            buffer.putShort((short) bytes.length).put(bytes);
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Converts {@code history.txt} in one pass. The log is written to a temporary file
+     * and moved into place last, so an interrupted migration simply runs again.
+     */
+    private void migrateLegacy() throws IOException {
+        List<QuizRecord> legacy = new ArrayList<>();
+        for (String line : Files.readAllLines(legacyPath, StandardCharsets.UTF_8)) {
+            QuizRecord record = parseLine(line);
+            if (record != null && !record.username.isEmpty()) {
+                legacy.add(record);
+            }
+        }
+        // Text lines were sorted by timestamp when read; the log keeps them in that order.
+        legacy.sort(Comparator.comparingLong((QuizRecord r) -> r.timestamp));
+
+        Path temp = logPath.resolveSibling(LOG_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + legacy.size() * RECORD_BYTES)
+                    .putInt(LOG_MAGIC).putInt(LOG_VERSION).putInt(RECORD_BYTES).putInt(0);
+            for (QuizRecord record : legacy) {
+                buffer.putLong(record.timestamp)
+                        .putInt(intern(record.username))
+                        .putInt(intern(record.topic))
+                        .putInt(intern(record.difficulty))
+                        .putInt(record.correctCount)
+                        .putInt(record.total)
+                        .putInt(record.scorePercent);
+            }
+            try (FileChannel dictionary = FileChannel.open(dictionaryPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(dictionary, encodeStrings(0), 0);
+                dictionary.force(false);
+            }
+            writeFully(channel, buffer.flip(), 0);
+            channel.force(false);
+        }
+        Files.deleteIfExists(statsPath);
+        Files.deleteIfExists(usersPath);
+        Files.move(temp, logPath, StandardCopyOption.ATOMIC_MOVE);
+        // Reloaded from disk by loadDictionary.
+        strings.clear();
+        ids.clear();
+        try {
+            Files.move(legacyPath, legacyPath.resolveSibling(LEGACY_FILE + MIGRATED_SUFFIX),
+                    StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(legacyIndexPath);
+        } catch (IOException ignored) {
+            // The log exists now, so the text file is never read again.
+        }
+    }
+
+    /**
+     * Parses a line of the legacy text format:
+     * username|timestamp|topic|difficulty|correct|total|score
+     */
     private QuizRecord parseLine(String line) {
         if (line == null || line.isBlank()) {
             return null;
@@ -90,33 +889,150 @@ final class QuizHistoryStore {
         try {
             QuizRecord record = new QuizRecord();
             record.username = unescape(parts[0]);
-            record.timestamp = parts[1];
+            record.timestamp = Instant.parse(parts[1]).toEpochMilli();
             record.topic = unescape(parts[2]);
             record.difficulty = unescape(parts[3]);
             record.correctCount = Integer.parseInt(parts[4]);
             record.total = Integer.parseInt(parts[5]);
-            record.scorePercent = Integer.parseInt(parts[6]);
+            record.scorePercent = Integer.parseInt(parts[6].trim());
             return record;
-        } catch (NumberFormatException ex) {
+        } catch (NumberFormatException | DateTimeParseException ex) {
             return null;
         }
     }
 
-    private String escape(String value) {
-        return sanitize(value).replace("|", "%7C");
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
     }
 
     private String unescape(String value) {
-        return value == null ? "" : value.replace("%7C", "|");
+        return value == null ? "" : sanitize(value.replace("%7C", "|"));
     }
 
+    /**
+     * Trims {@code value} and shortens it to what the dictionary can hold, so queued
+     * results, statistics and lookups use the same string the dictionary will store.
+     */
     private String sanitize(String value) {
-        return value == null ? "" : value.trim();
+        return value == null ? "" : storable(value.trim());
+    }
+
+    private static String storable(String value) {
+        // Entries are length-prefixed with an unsigned short; at most 3 UTF-8 bytes per char.
+        if (value.length() <= 0xffff / 3) {
+            return value;
+        }
+        String stored = value;
+        while (stored.getBytes(StandardCharsets.UTF_8).length > 0xffff) {
+            int end = stored.length() / 2;
+            // Never split a surrogate pair; a lone half would not survive encoding.
+            if (Character.isHighSurrogate(stored.charAt(end - 1))) {
+                end--;
+            }
+            stored = stored.substring(0, end);
+        }
+        return stored;
+    }
+
+    /**
+     * Record numbers of one user's quizzes, oldest first.
+     */
+    private static final class RecordList {
+        private int[] numbers;
+        private int size;
+
+        RecordList() {
+            this(8);
+        }
+
+        RecordList(int capacity) {
+            numbers = new int[Math.max(capacity, 8)];
+        }
+
+        void add(int number) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+            }
+            numbers[size++] = number;
+        }
+    }
+
+    /**
+     * One page of a user's history, newest first.
+     */
+    static final class Page {
+        static final Page EMPTY = new Page(Collections.emptyList(), -1);
+
+        private final List<QuizRecord> records;
+        private final long nextCursor;
+
+        Page(List<QuizRecord> records, long nextCursor) {
+            this.records = records;
+            this.nextCursor = nextCursor;
+        }
+
+        List<QuizRecord> getRecords() {
+            return records;
+        }
+
+        /** Cursor for the following page, or -1 when this is the oldest one. */
+        long getNextCursor() {
+            return nextCursor;
+        }
+
+        boolean hasMore() {
+            return nextCursor >= 0;
+        }
+    }
+
+    /**
+     * A result waiting for the writer thread.
+     */
+    private static final class Pending {
+        final String user;
+        final String topic;
+        final String difficulty;
+        final long timestamp;
+        final int correct;
+        final int total;
+        final int scorePercent;
+        // Guarded by the store's monitor.
+        int number;
+
+        Pending(String user, String topic, String difficulty, long timestamp, int correct, int total, int scorePercent) {
+            this.user = user;
+            this.topic = topic;
+            this.difficulty = difficulty;
+            this.timestamp = timestamp;
+            this.correct = correct;
+            this.total = total;
+            this.scorePercent = scorePercent;
+        }
+
+        QuizRecord toQuizRecord() {
+            QuizRecord record = new QuizRecord();
+            record.username = user;
+            record.timestamp = timestamp;
+            record.topic = topic;
+            record.difficulty = difficulty;
+            record.correctCount = correct;
+            record.total = total;
+            record.scorePercent = scorePercent;
+            return record;
+        }
     }
 
     static final class QuizRecord {
         String username;
-        String timestamp;
+        long timestamp;
         String topic;
         String difficulty;
         int correctCount;
@@ -0,0 +1,240 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a small pool of ready-made quizzes for the signed-in user's recent
+ * topic/difficulty/count combinations, so starting one of them needs no round trip.
+ * Prefetching runs on a single background thread, never starts while a
+ * user-initiated request is waiting on the network, and discards stale quizzes.
+ */
+final class QuizPrefetcher {
+
+    private static final int HISTORY_PAGE_SIZE = 50;
+    // Combinations older than this many results are not considered recent.
+    private static final int MAX_HISTORY_PAGES = 4;
+
+    private final QuizService quizService;
+    private final QuizHistoryStore historyStore;
+    private final int poolSize;
+    private final int concurrency;
+    private final long staleMillis;
+    private final long yieldMillis;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "quiz-prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    // Guarded by this.
+    private String username;
+    private List<QuizService.QuizKey> targets = new ArrayList<>();
+    private final Map<QuizService.QuizKey, Entry> pool = new HashMap<>();
+    private final Map<QuizService.QuizKey, CompletableFuture<QuizService.QuizData>> running = new HashMap<>();
+    private boolean fillScheduled;
+
+    QuizPrefetcher(QuizService quizService, QuizHistoryStore historyStore,
+                   int poolSize, int concurrency, long staleMillis, long yieldMillis) {
+        this.quizService = quizService;
+        this.historyStore = historyStore;
+        this.poolSize = Math.max(0, poolSize);
+        this.concurrency = Math.max(1, concurrency);
+        this.staleMillis = staleMillis;
+        this.yieldMillis = Math.max(50, yieldMillis);
+    }
+
+    static QuizPrefetcher fromSettings(QuizService quizService, QuizHistoryStore historyStore) {
+        return new QuizPrefetcher(
+                quizService,
+                historyStore,
+                ClientSettings.intValue("prefetch.poolSize", 3),
+                ClientSettings.intValue("prefetch.concurrency", 1),
+                ClientSettings.longValue("prefetch.staleSeconds", 1800) * 1000L,
+                ClientSettings.longValue("prefetch.yieldMillis", 500)
+        );
+    }
+
+    /**
+     * (Re)computes the prefetch targets from the user's history and starts filling the
+     * pool. Ready quizzes for targets that are still wanted are kept. Safe to call on
+     * the EDT; history is read on the prefetch thread.
+     */
+    void startFor(String user) {
+        if (poolSize == 0 || user == null) {
+            return;
+        }
+        synchronized (this) {
+            if (!user.equals(username)) {
+                clear();
+                username = user;
+            }
+        }
+        scheduler.execute(() -> loadTargets(user));
+    }
+
+    /**
+     * Forgets the current user and cancels outstanding prefetches.
+     */
+    synchronized void stop() {
+        username = null;
+        clear();
+    }
+
+    /**
+     * Removes and returns a ready quiz for {@code key}, or {@code null} when none is
+     * pooled or the pooled one is stale. A replacement is prefetched in the background.
+     */
+    QuizService.QuizData take(QuizService.QuizKey key) {
+        Entry entry;
+        synchronized (this) {
+            entry = pool.remove(key);
+        }
+        if (entry != null) {
+            scheduleFill(0);
+        }
+        if (entry == null || isStale(entry)) {
+            return null;
+        }
+        return entry.quizData;
+    }
+
+    private void clear() {
+        targets = new ArrayList<>();
+        pool.clear();
+        List<CompletableFuture<QuizService.QuizData>> cancelled = new ArrayList<>(running.values());
+        running.clear();
+        for (CompletableFuture<QuizService.QuizData> future : cancelled) {
+            future.cancel(true);
+        }
+    }
+
+    private void loadTargets(String user) {
+        Set<QuizService.QuizKey> recent = new LinkedHashSet<>();
+        long cursor = QuizHistoryStore.NEWEST;
+        for (int pages = 0; pages < MAX_HISTORY_PAGES && recent.size() < poolSize && cursor >= 0; pages++) {
+            QuizHistoryStore.Page page = historyStore.loadPage(user, cursor, HISTORY_PAGE_SIZE);
+            for (QuizHistoryStore.QuizRecord record : page.getRecords()) {
+                if (recent.size() == poolSize) {
+                    break;
+                }
+                QuizService.QuizKey key = new QuizService.QuizKey(record.topic, record.total, record.difficulty);
+                // Large quizzes are a full parallel fan-out each; too costly to fetch speculatively.
+                if (!key.getTopic().isEmpty() && !QuizService.isLarge(key)) {
+                    recent.add(key);
+                }
+            }
+            cursor = page.getNextCursor();
+        }
+        List<CompletableFuture<QuizService.QuizData>> unwanted = new ArrayList<>();
+        synchronized (this) {
+            if (!user.equals(username)) {
+                return;
+            }
+            targets = new ArrayList<>(recent);
+            pool.keySet().retainAll(recent);
+            for (Map.Entry<QuizService.QuizKey, CompletableFuture<QuizService.QuizData>> entry : running.entrySet()) {
+                if (!recent.contains(entry.getKey())) {
+                    unwanted.add(entry.getValue());
+                }
+            }
+            running.values().removeAll(unwanted);
+        }
+        for (CompletableFuture<QuizService.QuizData> future : unwanted) {
+            future.cancel(true);
+        }
+        scheduleFill(0);
+    }
+
+    private synchronized void scheduleFill(long delayMillis) {
+        if (fillScheduled || username == null) {
+            return;
+        }
+        fillScheduled = true;
+        scheduler.schedule(this::fill, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void fill() {
+        synchronized (this) {
+            fillScheduled = false;
+            if (username == null) {
+                return;
+            }
+        }
+        if (quizService.foregroundFetches() > 0) {
+            // A user is waiting on the backend; try again once it is less busy.
+            scheduleFill(yieldMillis);
+            return;
+        }
+        // Slots are reserved under the lock and the fetches started outside it: starting one
+        // can block on a cache lookup, and a fetch that is already complete calls back
+        // into onPrefetched on this thread.
+        Map<QuizService.QuizKey, CompletableFuture<QuizService.QuizData>> started = new HashMap<>();
+        String owner;
+        synchronized (this) {
+            owner = username;
+            if (owner == null) {
+                return;
+            }
+            for (QuizService.QuizKey key : targets) {
+                if (running.size() >= concurrency) {
+                    break;
+                }
+                Entry entry = pool.get(key);
+                if ((entry != null && !isStale(entry)) || running.containsKey(key)) {
+                    continue;
+                }
+                CompletableFuture<QuizService.QuizData> slot = new CompletableFuture<>();
+                running.put(key, slot);
+                started.put(key, slot);
+            }
+        }
+        for (Map.Entry<QuizService.QuizKey, CompletableFuture<QuizService.QuizData>> entry : started.entrySet()) {
+            QuizService.QuizKey key = entry.getKey();
+            CompletableFuture<QuizService.QuizData> slot = entry.getValue();
+            // A slot cancelled by stop() or a target change cancels the fetch with it.
+            try {
+                QuizService.relay(quizService.prefetchAsync(key), slot);
+            } catch (RuntimeException ex) {
+                slot.completeExceptionally(ex);
+            }
+            slot.whenComplete((quizData, failure) -> onPrefetched(owner, key, slot, quizData, failure));
+        }
+    }
+
+    private void onPrefetched(String owner, QuizService.QuizKey key, CompletableFuture<QuizService.QuizData> future,
+                              QuizService.QuizData quizData, Throwable failure) {
+        synchronized (this) {
+            if (running.get(key) != future) {
+                return;
+            }
+            running.remove(key);
+            if (failure == null && owner.equals(username) && targets.contains(key)) {
+                pool.put(key, new Entry(quizData, System.currentTimeMillis()));
+            }
+        }
+        // Back off after failures so an unreachable backend is not hammered.
+        scheduleFill(failure == null ? 0 : yieldMillis * 10);
+    }
+
+    private boolean isStale(Entry entry) {
+        return System.currentTimeMillis() - entry.fetchedAt > staleMillis;
+    }
+
+    private static final class Entry {
+        final QuizService.QuizData quizData;
+        final long fetchedAt;
+
+        Entry(QuizService.QuizData quizData, long fetchedAt) {
+            this.quizData = quizData;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
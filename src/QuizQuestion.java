@@ -1,5 +1,7 @@
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 class QuizQuestion {
@@ -25,6 +27,14 @@ class QuizQuestion {
         return correctIndex;
     }
 
+    /**
+     * The prompt reduced to lower-case letters and digits, for spotting the same
+     * question worded with different case or punctuation.
+     */
+    String promptKey() {
+        return prompt.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
     @SuppressWarnings("unchecked")
     static QuizQuestion fromJsonMap(Map<String, Object> map) {
         Object promptValue = map.getOrDefault("question", map.get("prompt"));
@@ -55,5 +65,99 @@ class QuizQuestion {
 
         return new QuizQuestion((String) promptValue, options, correctIndex);
     }
-}
 
+    /**
+     * Binds a question straight from the token stream, applying the same rules as
+     * {@link #fromJsonMap(Map)} without building an intermediate map.
+     */
+    static QuizQuestion fromJson(JsonStreamReader reader) throws IOException, SimpleJsonParser.JsonParseException {
+        boolean hasQuestion = false;
+        String question = null;
+        String prompt = null;
+        List<String> options = null;
+        boolean optionsAreStrings = true;
+        boolean hasAnswerIndex = false;
+        Number answerIndex = null;
+        Number correctIndex = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "question":
+                    hasQuestion = true;
+                    question = readOptionalString(reader);
+                    break;
+                case "prompt":
+                    prompt = readOptionalString(reader);
+                    break;
+                case "options":
+                    options = null;
+                    optionsAreStrings = true;
+                    if (reader.peek() != JsonStreamReader.Token.BEGIN_ARRAY) {
+                        reader.skipValue();
+                        break;
+                    }
+                    options = new ArrayList<>(4);
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (optionsAreStrings && reader.peek() == JsonStreamReader.Token.STRING) {
+                            options.add(reader.nextString());
+                        } else {
+                            optionsAreStrings = false;
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                case "answerIndex":
+                    hasAnswerIndex = true;
+                    answerIndex = readOptionalNumber(reader);
+                    break;
+                case "correctIndex":
+                    correctIndex = readOptionalNumber(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        String promptValue = hasQuestion ? question : prompt;
+        if (promptValue == null) {
+            throw new IllegalArgumentException("Question prompt missing or not a string");
+        }
+        if (options == null) {
+            throw new IllegalArgumentException("Options missing or not an array");
+        }
+        if (!optionsAreStrings) {
+            throw new IllegalArgumentException("Option must be a string");
+        }
+        Number answerValue = hasAnswerIndex ? answerIndex : correctIndex;
+        if (answerValue == null) {
+            throw new IllegalArgumentException("answerIndex missing or not a number");
+        }
+        int index = answerValue.intValue();
+        if (index < 0 || index >= options.size()) {
+            throw new IllegalArgumentException("answerIndex out of bounds for options");
+        }
+
+        return new QuizQuestion(promptValue, options, index);
+    }
+
+    private static String readOptionalString(JsonStreamReader reader) throws IOException, SimpleJsonParser.JsonParseException {
+        if (reader.peek() == JsonStreamReader.Token.STRING) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+
+    private static Number readOptionalNumber(JsonStreamReader reader) throws IOException, SimpleJsonParser.JsonParseException {
+        if (reader.peek() == JsonStreamReader.Token.NUMBER) {
+            return reader.nextNumber();
+        }
+        reader.skipValue();
+        return null;
+    }
+}
@@ -1,162 +1,1177 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.net.URI;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 class QuizService {
 
-    private static final String BASE_URL = "http://localhost:3000";
+    private static final String GENERATE_PATH = "/api/quiz/generate";
+    private static final String GENERATE_STREAM_PATH = "/api/quiz/generate-stream";
+    private static final String GENERATE_BATCH_PATH = "/api/quiz/generate-batch";
+    private static final String SUBMIT_BATCH_PATH = "/api/quiz/submit-batch";
+    private static final String HEALTH_PATH = "/health";
+    private static final int MAX_BATCH_SIZE = Math.max(1, ClientSettings.intValue("batch.maxSize", 10));
+    // One generation call is capped by the backend's QUIZ_MIN_QUESTIONS/QUIZ_MAX_QUESTIONS.
+    private static final int CHUNK_SIZE = Math.max(1, ClientSettings.intValue("largeQuiz.chunkSize", 10));
+    private static final int MIN_CHUNK_SIZE = ClientSettings.intValue("largeQuiz.minChunkSize", 5);
+    private static final int TOP_UP_ROUNDS = ClientSettings.intValue("largeQuiz.topUpRounds", 2);
+    private static final int MAX_QUESTIONS = ClientSettings.intValue("largeQuiz.maxQuestions", 200);
+    private static final String NDJSON_TYPE = "application/x-ndjson";
+    // Concurrent requests per backend during warm-up, i.e. HTTP/1.1 connections opened ahead of time.
+    private static final int WARM_UP_CONNECTIONS = Math.max(1, ClientSettings.intValue("warmup.connections", 2));
+    // Enough passes over the sample quiz for the JIT to compile the binding code.
+    private static final int WARM_UP_PARSE_ROUNDS = 300;
     private static final HttpClient CLIENT = HttpClient.newBuilder()
             .connectTimeout(Duration.ofSeconds(10))
+            // HTTP_2 negotiates h2 via ALPN on https and tries an h2c upgrade on plain http.
+            .version(ClientSettings.enumValue("http.version", HttpClient.Version.HTTP_2))
             .build();
+    private static final Executor DEFAULT_PARSE_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "quiz-parse");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Executor parseExecutor;
+    private final QuizCache cache;
+    private final BackendPool backends;
+    private final ResiliencePolicy resilience;
+    private final QuestionBank bank;
+    private final QuizTransport transport;
+    private final RequestCoalescer<QuizKey, QuizData> inFlight = new RequestCoalescer<>();
+    private final AtomicInteger foregroundFetches = new AtomicInteger();
+
+    QuizService() {
+        this(DEFAULT_PARSE_EXECUTOR, QuizCache.fromSettings(), BackendPool.fromSettings(CLIENT),
+                ResiliencePolicy.fromSettings(DEFAULT_PARSE_EXECUTOR), QuestionBank.fromSettings(),
+                QuizTransport.fromSettings(CLIENT));
+    }
+
+    /**
+     * @param parseExecutor runs cache reads and response parsing; the HTTP exchange
+     *                      itself never occupies one of its threads
+     * @param cache         memory/disk cache consulted before the backend
+     * @param backends      backend instances that requests are balanced across
+     * @param resilience    hedging, retry and circuit-breaker policy for user requests
+     * @param bank          local store that collects every received question and can
+     *                      assemble quizzes without the backend
+     * @param transport     sends requests; records or replays exchanges for repeatable
+     *                      performance runs
+     */
+    QuizService(Executor parseExecutor, QuizCache cache, BackendPool backends, ResiliencePolicy resilience,
+                QuestionBank bank, QuizTransport transport) {
+        this.parseExecutor = parseExecutor;
+        this.cache = cache;
+        this.backends = backends;
+        this.resilience = resilience;
+        this.bank = bank;
+        this.transport = transport;
+    }
 
     QuizData requestQuiz(String topic, int questionCount, String difficulty) throws QuizServiceException {
-        String sanitizedTopic = topic != null ? topic.trim() : "";
-        if (sanitizedTopic.isEmpty()) {
-            throw new QuizServiceException("Topic must not be empty");
-        }
-        int sanitizedCount = Math.max(1, questionCount);
-        String normalizedDifficulty = (difficulty != null ? difficulty : "medium").toLowerCase();
-
-        String payload = buildPayload(sanitizedTopic, sanitizedCount, normalizedDifficulty);
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(BASE_URL + "/api/quiz/generate"))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(payload, StandardCharsets.UTF_8))
-                .build();
+        return await(requestQuizAsync(topic, questionCount, difficulty));
+    }
+
+    List<BatchResult> requestBatch(List<QuizKey> keys) throws QuizServiceException {
+        return await(requestBatchAsync(keys));
+    }
 
-        HttpResponse<String> response;
+    private static <T> T await(CompletableFuture<T> future) throws QuizServiceException {
         try {
-            response = CLIENT.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            return future.get();
         } catch (InterruptedException ex) {
+            future.cancel(true);
             Thread.currentThread().interrupt();
             throw new QuizServiceException("Network operation interrupted", ex);
-        } catch (IOException ex) {
-            throw new QuizServiceException("Network error while contacting quiz backend", ex);
+        } catch (ExecutionException ex) {
+            throw asServiceException(ex.getCause());
         }
+    }
 
-        if (response.statusCode() < 200 || response.statusCode() >= 300) {
-            throw new QuizServiceException("Backend returned status " + response.statusCode());
+    /**
+     * Starts a quiz request without blocking the caller. Cached quizzes are served
+     * according to the cache policy; otherwise the backend is contacted. Cancelling the
+     * returned future aborts the HTTP exchange, or closes the response body if parsing
+     * already started. Failures complete the future with a {@link QuizServiceException}.
+     */
+    CompletableFuture<QuizData> requestQuizAsync(String topic, int questionCount, String difficulty) {
+        return request(new QuizKey(topic, questionCount, difficulty), this::fetchShared);
+    }
+
+    /**
+     * Like {@link #requestQuizAsync}, but the backend streams questions as they are
+     * generated and each one is handed to {@code onQuestion} as soon as it is parsed,
+     * on a background thread. The returned future completes with the whole quiz once
+     * the stream ends. Quizzes served from the cache complete without any callbacks,
+     * and streamed requests are never coalesced with other requests. Quizzes larger
+     * than one chunk are fanned out instead, and their questions are handed over one
+     * chunk at a time.
+     */
+    CompletableFuture<QuizData> streamQuizAsync(String topic, int questionCount, String difficulty,
+                                                Consumer<QuizQuestion> onQuestion) {
+        QuizKey requested = new QuizKey(topic, questionCount, difficulty);
+        // Once a question has been shown, a banked quiz can no longer stand in for the stream.
+        AtomicBoolean delivered = new AtomicBoolean();
+        Consumer<QuizQuestion> tracked = question -> {
+            delivered.set(true);
+            onQuestion.accept(question);
+        };
+        if (isLarge(requested)) {
+            return request(requested, key -> trackForeground(fetchLarge(key, true, tracked)), () -> !delivered.get());
         }
+        return request(requested,
+                key -> trackForeground(resilience.execute(
+                        () -> fetchQuiz(GENERATE_STREAM_PATH, key, true,
+                                (response, body) -> readStreamResponse(response, body, tracked)),
+                        false,
+                        QuizService::isRetryable)),
+                () -> !delivered.get());
+    }
 
-        return parseQuizData(response.body());
+    private CompletableFuture<QuizData> request(QuizKey key, Function<QuizKey, CompletableFuture<QuizData>> fetcher) {
+        return request(key, fetcher, () -> true);
     }
 
-    private String buildPayload(String topic, int questionCount, String difficulty) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("{\"topic\":\"")
-                .append(escapeJson(topic))
-                .append("\",\"questionCount\":")
-                .append(questionCount)
-                .append(",\"difficulty\":\"")
-                .append(escapeJson(difficulty))
-                .append("\"}");
-        return builder.toString();
+    private CompletableFuture<QuizData> request(QuizKey key, Function<QuizKey, CompletableFuture<QuizData>> fetcher,
+                                                BooleanSupplier mayFallBack) {
+        if (key.getTopic().isEmpty()) {
+            return CompletableFuture.failedFuture(new QuizServiceException("Topic must not be empty"));
+        }
+        if (key.getQuestionCount() > MAX_QUESTIONS) {
+            return CompletableFuture.failedFuture(
+                    new QuizServiceException("A quiz can have at most " + MAX_QUESTIONS + " questions"));
+        }
+        QuizData cached = cache.lookupMemory(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<QuizData> result = new CompletableFuture<>();
+        try {
+            // The disk tier is consulted off the caller's thread, which may be the EDT.
+            parseExecutor.execute(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                QuizData stored = cache.lookupDisk(key);
+                if (stored == null && bank.mode() != QuestionBank.Mode.NETWORK_FIRST) {
+                    stored = bank.sample(key);
+                }
+                if (stored != null) {
+                    result.complete(stored);
+                } else {
+                    relay(fetchOrFallback(key, fetcher, mayFallBack), result);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            relay(fetchOrFallback(key, fetcher, mayFallBack), result);
+        }
+        return result;
     }
 
-    @SuppressWarnings("unchecked")
-    private QuizData parseQuizData(String body) throws QuizServiceException {
-        Object parsed;
+    /**
+     * Contacts the backend unless the bank is in offline mode. In network-first mode a
+     * failed request is answered from the bank when it holds enough questions and
+     * {@code mayFallBack} still allows it; in bank-first mode the bank was already tried.
+     */
+    private CompletableFuture<QuizData> fetchOrFallback(QuizKey key, Function<QuizKey, CompletableFuture<QuizData>> fetcher,
+                                                        BooleanSupplier mayFallBack) {
+        if (bank.mode() == QuestionBank.Mode.OFFLINE) {
+            return CompletableFuture.failedFuture(offlineShortage(key));
+        }
+        CompletableFuture<QuizData> fetched = fetcher.apply(key);
+        if (bank.mode() != QuestionBank.Mode.NETWORK_FIRST) {
+            return fetched;
+        }
+        CompletableFuture<QuizData> result = new CompletableFuture<>();
+        fetched.whenComplete((quizData, failure) -> {
+            if (failure == null) {
+                result.complete(quizData);
+                return;
+            }
+            boolean fallBack = !(unwrap(failure) instanceof CancellationException) && mayFallBack.getAsBoolean();
+            QuizData banked = fallBack ? bank.sample(key) : null;
+            if (banked != null) {
+                result.complete(banked);
+            } else {
+                result.completeExceptionally(failure);
+            }
+        });
+        cancelWith(result, fetched);
+        return result;
+    }
+
+    private QuizServiceException offlineShortage(QuizKey key) {
+        return new QuizServiceException("Offline mode: the question bank has " + bank.count(key.getTopic(), key.getDifficulty())
+                + " " + key.getDifficulty() + " questions on \"" + key.getTopic() + "\", " + key.getQuestionCount() + " needed");
+    }
+
+    /**
+     * Requests several quizzes in as few round trips as possible. Cached quizzes are
+     * served from the cache and the rest are generated concurrently by the backend's
+     * batch route, {@code batch.maxSize} per request. The result list matches
+     * {@code keys} in order and each entry carries either its quiz or its own error, so
+     * one failed topic does not fail the others.
+     */
+    CompletableFuture<List<BatchResult>> requestBatchAsync(List<QuizKey> keys) {
+        BatchResult[] results = new BatchResult[keys.size()];
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            QuizKey key = keys.get(i);
+            QuizData cached = key.getTopic().isEmpty() ? null : cache.lookupMemory(key);
+            if (key.getTopic().isEmpty()) {
+                results[i] = new BatchResult(key, null, new QuizServiceException("Topic must not be empty"));
+            } else if (cached != null) {
+                results[i] = new BatchResult(key, cached, null);
+            } else {
+                pending.add(i);
+            }
+        }
+        CompletableFuture<List<BatchResult>> result = new CompletableFuture<>();
+        if (pending.isEmpty()) {
+            result.complete(Arrays.asList(results));
+            return result;
+        }
         try {
-            parsed = SimpleJsonParser.parse(body);
-        } catch (SimpleJsonParser.JsonParseException ex) {
-            throw new QuizServiceException("Failed to parse quiz JSON", ex);
+            parseExecutor.execute(() -> resolveBatch(keys, pending, results, result));
+        } catch (RejectedExecutionException ex) {
+            resolveBatch(keys, pending, results, result);
         }
+        return result;
+    }
 
-        if (!(parsed instanceof Map)) {
-            throw new QuizServiceException("Quiz payload root must be a JSON object");
+    private void resolveBatch(List<QuizKey> keys, List<Integer> pending, BatchResult[] results,
+                              CompletableFuture<List<BatchResult>> result) {
+        if (result.isDone()) {
+            return;
+        }
+        // Repeated keys share one generated quiz, like coalesced single requests do.
+        Map<QuizKey, List<Integer>> misses = new LinkedHashMap<>();
+        for (int index : pending) {
+            QuizKey key = keys.get(index);
+            QuizData stored = cache.lookupDisk(key);
+            if (stored == null && bank.mode() != QuestionBank.Mode.NETWORK_FIRST) {
+                stored = bank.sample(key);
+            }
+            if (stored == null && bank.mode() == QuestionBank.Mode.OFFLINE) {
+                results[index] = new BatchResult(key, null, offlineShortage(key));
+            } else if (stored != null) {
+                results[index] = new BatchResult(key, stored, null);
+            } else {
+                misses.computeIfAbsent(key, ignored -> new ArrayList<>()).add(index);
+            }
+        }
+        List<QuizKey> missKeys = new ArrayList<>();
+        Set<QuizKey> generated = ConcurrentHashMap.newKeySet();
+        List<CompletableFuture<?>> chunks = new ArrayList<>();
+        for (Map.Entry<QuizKey, List<Integer>> miss : misses.entrySet()) {
+            QuizKey key = miss.getKey();
+            if (!isLarge(key)) {
+                missKeys.add(key);
+                continue;
+            }
+            // Too big for one generation call; fanned out and cached on its own.
+            CompletableFuture<QuizData> fetched = fetchOrFallback(key, this::fetchShared, () -> true);
+            chunks.add(fetched.handle((quizData, failure) -> {
+                BatchResult item = failure == null
+                        ? new BatchResult(key, quizData, null)
+                        : new BatchResult(key, null, asServiceException(failure));
+                for (int index : miss.getValue()) {
+                    results[index] = item;
+                }
+                return null;
+            }));
+            cancelWith(result, fetched);
+        }
+        for (int start = 0; start < missKeys.size(); start += MAX_BATCH_SIZE) {
+            List<QuizKey> chunkKeys = missKeys.subList(start, Math.min(start + MAX_BATCH_SIZE, missKeys.size()));
+            CompletableFuture<List<BatchResult>> fetched = trackForeground(resilience.execute(
+                    () -> fetch(GENERATE_BATCH_PATH, buildBatchPayload(chunkKeys),
+                            (response, body) -> parseBatchResults(body, chunkKeys)),
+                    false,
+                    QuizService::isRetryable));
+            chunks.add(fetched.handle((items, failure) -> {
+                for (int i = 0; i < chunkKeys.size(); i++) {
+                    QuizKey key = chunkKeys.get(i);
+                    BatchResult item = failure == null ? items.get(i) : batchFailure(key, failure);
+                    if (failure == null && item.isSuccess()) {
+                        cache.put(key, item.getQuizData());
+                        generated.add(key);
+                    }
+                    for (int index : misses.get(key)) {
+                        results[index] = item;
+                    }
+                }
+                return null;
+            }));
+            cancelWith(result, fetched);
+        }
+        CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, failure) -> {
+            result.complete(Arrays.asList(results));
+            for (QuizKey key : generated) {
+                QuizData quizData = results[misses.get(key).get(0)].getQuizData();
+                cache.persist(key, quizData);
+                collect(key, quizData);
+            }
+        });
+    }
+
+    private BatchResult batchFailure(QuizKey key, Throwable failure) {
+        QuizData banked = bank.mode() == QuestionBank.Mode.NETWORK_FIRST
+                && !(unwrap(failure) instanceof CancellationException) ? bank.sample(key) : null;
+        return banked != null
+                ? new BatchResult(key, banked, null)
+                : new BatchResult(key, null, asServiceException(failure));
+    }
+
+    private void collect(QuizKey key, QuizData quizData) {
+        bank.addAll(key.getTopic(), key.getDifficulty(), quizData.getQuestions());
+    }
+
+    private static void cancelWith(CompletableFuture<?> source, CompletableFuture<?> target) {
+        source.whenComplete((value, failure) -> {
+            if (source.isCancelled()) {
+                target.cancel(true);
+            }
+        });
+    }
+
+    /**
+     * Completes {@code target} with the outcome of {@code source}, and cancels
+     * {@code source} if {@code target} is cancelled first.
+     */
+    static <T> void relay(CompletableFuture<T> source, CompletableFuture<T> target) {
+        source.whenComplete((value, failure) -> {
+            if (failure != null) {
+                target.completeExceptionally(failure);
+            } else {
+                target.complete(value);
+            }
+        });
+        cancelWith(target, source);
+    }
+
+    /**
+     * Pays the costs of the first quiz request ahead of time. Each backend gets a few
+     * {@code /health} requests, which start the HTTP client and leave keep-alive
+     * connections open. A sample quiz is also bound repeatedly, so the parsing classes are
+     * loaded and JIT-compiled, and the question bank index is loaded. Warm-up traffic
+     * does not feed the balancer or the resilience policy. The returned future never
+     * fails: a backend that cannot be reached, or a bank that cannot be read, stays cold.
+     */
+    CompletableFuture<WarmUpReport> warmUpAsync() {
+        List<BackendPool.Endpoint> endpoints = backends.endpoints();
+        List<CompletableFuture<Long>> connections = new ArrayList<>(endpoints.size());
+        for (BackendPool.Endpoint endpoint : endpoints) {
+            connections.add(warmConnection(endpoint));
         }
-        Map<String, Object> root = (Map<String, Object>) parsed;
+        CompletableFuture<Long> parsing = CompletableFuture.supplyAsync(QuizService::warmParsers, parseExecutor)
+                .exceptionally(failure -> 0L);
+        CompletableFuture<Long> banking = CompletableFuture.supplyAsync(() -> {
+            long startedAt = System.nanoTime();
+            bank.size();
+            return System.nanoTime() - startedAt;
+        }, parseExecutor).exceptionally(failure -> 0L);
+        List<CompletableFuture<?>> all = new ArrayList<>(connections);
+        all.add(parsing);
+        all.add(banking);
+        return CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            int reached = 0;
+            long connectionNanos = 0;
+            for (CompletableFuture<Long> connection : connections) {
+                long saved = connection.join();
+                if (saved >= 0) {
+                    reached++;
+                    connectionNanos += saved;
+                }
+            }
+            return new WarmUpReport(endpoints.size(), reached,
+                    reached == 0 ? 0 : connectionNanos / reached, parsing.join(), banking.join());
+        });
+    }
 
-        Object questionsValue = root.get("questions");
-        if (!(questionsValue instanceof List)) {
-            throw new QuizServiceException("Quiz payload missing \"questions\" array");
+    /**
+     * Opens {@link #WARM_UP_CONNECTIONS} connections to {@code endpoint}, then times one
+     * more request over a warm connection. Completes with the difference (the set-up a
+     * first request would have paid), or -1 when the backend did not answer.
+     */
+    private CompletableFuture<Long> warmConnection(BackendPool.Endpoint endpoint) {
+        List<CompletableFuture<Long>> opened = new ArrayList<>(WARM_UP_CONNECTIONS);
+        for (int i = 0; i < WARM_UP_CONNECTIONS; i++) {
+            opened.add(ping(endpoint));
         }
+        return CompletableFuture.allOf(opened.toArray(new CompletableFuture<?>[0]))
+                .thenCompose(ignored -> ping(endpoint))
+                .thenApply(warmNanos -> {
+                    long coldNanos = 0;
+                    for (CompletableFuture<Long> cold : opened) {
+                        coldNanos += cold.join();
+                    }
+                    return Math.max(0, coldNanos / opened.size() - warmNanos);
+                })
+                .exceptionally(failure -> -1L);
+    }
 
-        List<QuizQuestion> questions = parseQuestionsArray((List<Object>) questionsValue);
-        if (questions.isEmpty()) {
-            throw new QuizServiceException("Quiz payload returned zero questions");
+    private CompletableFuture<Long> ping(BackendPool.Endpoint endpoint) {
+        HttpRequest request = HttpCompression.acceptCompressed(HttpRequest.newBuilder()
+                        .uri(endpoint.resolve(HEALTH_PATH))
+                        .timeout(resilience.attemptTimeout()))
+                .GET()
+                .build();
+        long startedAt = System.nanoTime();
+        return transport.send(request, new byte[0]).thenApplyAsync(response -> {
+            try (InputStream body = response.body()) {
+                body.transferTo(OutputStream.nullOutputStream());
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+            return System.nanoTime() - startedAt;
+        }, parseExecutor);
+    }
+
+    /**
+     * Binds a sample quiz through every response parser and returns how much faster the
+     * last pass was than the first.
+     */
+    private static long warmParsers() {
+        byte[] quiz = sampleQuiz(false);
+        byte[] stream = sampleQuiz(true);
+        long coldNanos = bindSample(quiz, stream);
+        long warmNanos = coldNanos;
+        for (int i = 0; i < WARM_UP_PARSE_ROUNDS; i++) {
+            warmNanos = bindSample(quiz, stream);
         }
+        return Math.max(0, coldNanos - warmNanos);
+    }
 
-        String quizId = asOptionalString(root.get("quizId"));
-        String topic = asOptionalString(root.get("topic"));
-        String difficulty = asOptionalString(root.get("difficulty"));
-        int questionCount = asOptionalInteger(root.get("questionCount"), questions.size());
+    private static long bindSample(byte[] quiz, byte[] stream) {
+        long startedAt = System.nanoTime();
+        try {
+            readQuizData(new JsonStreamReader(new ByteArrayInputStream(quiz)));
+            readQuizStream(new JsonStreamReader(new ByteArrayInputStream(stream)), question -> { });
+            peekMetadata(quiz);
+        } catch (IOException | SimpleJsonParser.JsonParseException | QuizServiceException ex) {
+            throw new IllegalStateException("Sample quiz failed to bind", ex);
+        }
+        return System.nanoTime() - startedAt;
+    }
 
-        return new QuizData(quizId, topic, difficulty, questionCount, questions);
+    /**
+     * A ten-question quiz shaped like a generate response, or like the NDJSON lines of a
+     * streamed one.
+     */
+    private static byte[] sampleQuiz(boolean streamed) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonWriter writer = JsonWriter.acquire()) {
+            if (streamed) {
+                for (int i = 0; i < 10; i++) {
+                    try (JsonWriter line = JsonWriter.acquire()) {
+                        writeSampleQuestion(line.beginObject().name("question"), i).endObject();
+                        out.writeBytes(line.toByteArray());
+                        out.write('\n');
+                    }
+                }
+                writer.beginObject().name("done").beginObject();
+            } else {
+                writer.beginObject().name("questions").beginArray();
+                for (int i = 0; i < 10; i++) {
+                    writeSampleQuestion(writer, i);
+                }
+                writer.endArray();
+            }
+            writer.name("quizId").value("warm-up")
+                    .name("topic").value("Warm-up")
+                    .name("difficulty").value("medium")
+                    .name("questionCount").value(10)
+                    .endObject();
+            if (streamed) {
+                writer.endObject();
+            }
+            out.writeBytes(writer.toByteArray());
+        }
+        return out.toByteArray();
     }
 
-    @SuppressWarnings("unchecked")
-    private List<QuizQuestion> parseQuestionsArray(List<Object> rawQuestions) throws QuizServiceException {
-        List<QuizQuestion> questions = new ArrayList<>();
-        for (Object entry : rawQuestions) {
-            if (!(entry instanceof Map)) {
-                throw new QuizServiceException("Question entry should be an object");
+    private static JsonWriter writeSampleQuestion(JsonWriter writer, int index) {
+        return writer.beginObject()
+                .name("question").value("Warm-up question " + index + " \u2013 which option is right?")
+                .name("options").beginArray()
+                .value("First").value("Second").value("Third").value("Fourth")
+                .endArray()
+                .name("answerIndex").value(index % 4)
+                .endObject();
+    }
+
+    /**
+     * Sends finished quizzes to the backend's bulk submit route. Completes with one
+     * entry per submission, in order: {@code null} when the backend stored it, or the
+     * backend's reason for rejecting it. Transport failures and error statuses fail the
+     * future, so the caller can retry the whole batch.
+     */
+    CompletableFuture<List<String>> uploadResultsAsync(List<ResultUploader.Submission> submissions) {
+        return fetch(SUBMIT_BATCH_PATH, buildSubmitPayload(submissions),
+                (response, body) -> parseSubmitResults(body, submissions.size()));
+    }
+
+    QuizCache.Stats cacheStats() {
+        return cache.stats();
+    }
+
+    ResiliencePolicy.Stats resilienceStats() {
+        return resilience.stats();
+    }
+
+    /**
+     * Number of requests that piggybacked on an identical request already in flight.
+     */
+    long coalescedRequests() {
+        return inFlight.coalescedCount();
+    }
+
+    /**
+     * Fetches a fresh quiz for background use. Skips the cache lookup, request
+     * coalescing and cache fill, so a prefetched quiz is only ever handed out once.
+     * Prefetches are never hedged or retried.
+     */
+    CompletableFuture<QuizData> prefetchAsync(QuizKey key) {
+        if (isLarge(key)) {
+            return fetchLarge(key, false, question -> { });
+        }
+        return fetchQuiz(GENERATE_PATH, key, false, (response, body) -> parseQuizData(body));
+    }
+
+    /**
+     * Number of user-initiated requests currently waiting on the backend. Background
+     * work checks this to stay out of their way.
+     */
+    int foregroundFetches() {
+        return foregroundFetches.get();
+    }
+
+    private CompletableFuture<QuizData> fetchShared(QuizKey key) {
+        if (isLarge(key)) {
+            return trackForeground(inFlight.join(key, () -> fetchLarge(key, true, question -> { })));
+        }
+        return trackForeground(inFlight.join(key, () -> resilience.execute(
+                () -> fetchQuiz(GENERATE_PATH, key, true, (response, body) -> parseQuizData(body)),
+                true,
+                QuizService::isRetryable)));
+    }
+
+    static boolean isLarge(QuizKey key) {
+        return key.getQuestionCount() > CHUNK_SIZE;
+    }
+
+    /**
+     * Builds a large quiz from chunk requests sent in parallel; see {@link QuizFanOut}.
+     * Each chunk has its own retries and hedging, so one slow or failed chunk does not
+     * restart the others.
+     */
+    private CompletableFuture<QuizData> fetchLarge(QuizKey key, boolean cacheResult, Consumer<QuizQuestion> onQuestion) {
+        CompletableFuture<QuizData> assembled = new QuizFanOut(key, CHUNK_SIZE, MIN_CHUNK_SIZE, TOP_UP_ROUNDS,
+                (questionCount, part, parts) -> {
+                    CompletableFuture<QuizData> chunk = resilience.execute(
+                            () -> fetch(GENERATE_PATH,
+                                    buildPayload(key.getTopic(), questionCount, key.getDifficulty(), part, parts),
+                                    (response, body) -> parseQuizData(body)),
+                            true,
+                            QuizService::isRetryable);
+                    // Banked per chunk, so questions survive even if the whole quiz does not.
+                    chunk.thenAccept(quizData -> collect(key, quizData));
+                    return chunk;
+                },
+                onQuestion).start();
+        if (!cacheResult) {
+            return assembled;
+        }
+        CompletableFuture<QuizData> result = assembled.thenApply(quizData -> {
+            cache.put(key, quizData);
+            return quizData;
+        });
+        cancelWith(result, assembled);
+        result.thenAccept(quizData -> cache.persist(key, quizData));
+        return result;
+    }
+
+    private <T> CompletableFuture<T> trackForeground(CompletableFuture<T> future) {
+        foregroundFetches.incrementAndGet();
+        future.whenComplete((value, failure) -> foregroundFetches.decrementAndGet());
+        return future;
+    }
+
+    private CompletableFuture<QuizData> fetchQuiz(String path, QuizKey key, boolean cacheResult,
+                                                  BodyReader<QuizData> bodyReader) {
+        byte[] payload = buildPayload(key.getTopic(), key.getQuestionCount(), key.getDifficulty());
+        if (!cacheResult) {
+            CompletableFuture<QuizData> result = fetch(path, payload, bodyReader);
+            result.thenAccept(quizData -> collect(key, quizData));
+            return result;
+        }
+        CompletableFuture<QuizData> result = fetch(path, payload, (response, body) -> {
+            QuizData quizData = bodyReader.read(response, body);
+            // Visible in memory before any waiter sees the quiz, so an immediate repeat hits.
+            cache.put(key, quizData);
+            return quizData;
+        });
+        // Registered first, so it runs after the waiters, still on the parse thread.
+        result.thenAccept(quizData -> {
+            cache.persist(key, quizData);
+            collect(key, quizData);
+        });
+        return result;
+    }
+
+    private <T> CompletableFuture<T> fetch(String path, byte[] payload, BodyReader<T> bodyReader) {
+        BackendPool.Endpoint endpoint = backends.choose();
+        HttpRequest.Builder builder = HttpCompression.acceptCompressed(HttpRequest.newBuilder()
+                .uri(endpoint.resolve(path))
+                .timeout(resilience.attemptTimeout())
+                .header("Content-Type", "application/json"));
+        HttpRequest request = builder
+                .POST(HttpCompression.body(builder, payload))
+                .build();
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicReference<InputStream> openBody = new AtomicReference<>();
+        long startedAt = endpoint.begin();
+        CompletableFuture<HttpResponse<InputStream>> exchange = transport.send(request, payload);
+        exchange.whenComplete((response, failure) -> {
+            // Latency is measured to the response headers; for streamed quizzes that is the first question.
+            if (failure == null && response.statusCode() < 500) {
+                endpoint.recordSuccess(startedAt);
+            } else if (!(unwrap(failure) instanceof CancellationException)) {
+                endpoint.recordFailure();
+            }
+            if (failure != null) {
+                result.completeExceptionally(new BackendUnavailableException(
+                        "Network error while contacting quiz backend", unwrap(failure)));
+                return;
             }
             try {
-                questions.add(QuizQuestion.fromJsonMap((Map<String, Object>) entry));
-            } catch (IllegalArgumentException ex) {
-                throw new QuizServiceException("Invalid question structure: " + ex.getMessage(), ex);
+                parseExecutor.execute(() -> readResponse(response, bodyReader, openBody, result));
+            } catch (RejectedExecutionException ex) {
+                closeQuietly(response.body());
+                result.completeExceptionally(new QuizServiceException("Quiz parsing is unavailable", ex));
+            }
+        });
+        result.whenComplete((value, failure) -> {
+            endpoint.end();
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+                closeQuietly(openBody.get());
+            }
+        });
+        return result;
+    }
+
+    private <T> void readResponse(HttpResponse<InputStream> response, BodyReader<T> bodyReader,
+                                  AtomicReference<InputStream> openBody, CompletableFuture<T> result) {
+        try (InputStream body = response.body()) {
+            openBody.set(body);
+            if (result.isDone()) {
+                return;
             }
+            int status = response.statusCode();
+            if (status >= 500 || status == 429) {
+                throw new BackendUnavailableException("Backend returned status " + status, null);
+            }
+            if (status < 200 || status >= 300) {
+                throw new QuizServiceException("Backend returned status " + status);
+            }
+            T value;
+            try (InputStream decoded = HttpCompression.decode(response, body)) {
+                value = bodyReader.read(response, decoded);
+                // A streamed quiz is read up to its last line; consuming the end of the body
+                // lets the connection be reused and lets a recording transport see it finish.
+                body.transferTo(OutputStream.nullOutputStream());
+            }
+            result.complete(value);
+        } catch (QuizServiceException ex) {
+            result.completeExceptionally(ex);
+        } catch (IOException ex) {
+            result.completeExceptionally(new QuizServiceException("Network error while reading quiz response", ex));
+        } catch (RuntimeException ex) {
+            result.completeExceptionally(ex);
         }
-        return questions;
     }
 
-    private String asOptionalString(Object value) {
-        if (value instanceof String) {
-            return (String) value;
+    /**
+     * Only failures that happen before any response body is read are retried, so a
+     * streamed quiz never reports the same question twice.
+     */
+    private static boolean isRetryable(Throwable failure) {
+        return unwrap(failure) instanceof BackendUnavailableException;
+    }
+
+    static QuizServiceException asServiceException(Throwable failure) {
+        Throwable cause = unwrap(failure);
+        if (cause instanceof QuizServiceException) {
+            return (QuizServiceException) cause;
+        }
+        if (cause instanceof CancellationException) {
+            return new QuizServiceException("Quiz request was cancelled", cause);
+        }
+        return new QuizServiceException("Unexpected error while requesting quiz", cause);
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        if (stream == null) {
+            return;
+        }
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+            // Closing only releases the connection; nothing useful to report.
+        }
+    }
+
+    private static byte[] buildPayload(String topic, int questionCount, String difficulty) {
+        return buildPayload(topic, questionCount, difficulty, 0, 0);
+    }
+
+    private static byte[] buildPayload(String topic, int questionCount, String difficulty, int part, int parts) {
+        try (JsonWriter writer = JsonWriter.acquire()) {
+            writer.beginObject()
+                    .name("topic").value(topic)
+                    .name("questionCount").value(questionCount)
+                    .name("difficulty").value(difficulty);
+            if (parts > 1) {
+                // Lets the backend steer each chunk to different material, which cuts duplicates.
+                writer.name("part").value(part).name("parts").value(parts);
+            }
+            return writer.endObject().toByteArray();
+        }
+    }
+
+    private static byte[] buildSubmitPayload(List<ResultUploader.Submission> submissions) {
+        try (JsonWriter writer = JsonWriter.acquire()) {
+            writer.beginObject().name("submissions").beginArray();
+            for (ResultUploader.Submission submission : submissions) {
+                writer.beginObject()
+                        .name("submissionId").value(submission.getId())
+                        .name("user").value(submission.getUser())
+                        .name("quizId").value(submission.getQuizId())
+                        .name("answers").beginArray();
+                for (int answer : submission.getAnswers()) {
+                    writer.value(answer);
+                }
+                writer.endArray()
+                        .name("submittedAt").value(submission.getSubmittedAt())
+                        .endObject();
+            }
+            return writer.endArray().endObject().toByteArray();
+        }
+    }
+
+    private static List<String> parseSubmitResults(InputStream body, int expected)
+            throws IOException, QuizServiceException {
+        try {
+            JsonStreamReader reader = new JsonStreamReader(body);
+            if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) {
+                throw new QuizServiceException("Submit payload root must be a JSON object");
+            }
+            List<String> errors = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("results") || reader.peek() != JsonStreamReader.Token.BEGIN_ARRAY) {
+                    reader.skipValue();
+                    continue;
+                }
+                errors = new ArrayList<>(expected);
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String error = null;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("error")) {
+                            error = readOptionalString(reader);
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    errors.add(error);
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+            if (errors == null || errors.size() != expected) {
+                throw new QuizServiceException("Submit payload does not have one result per submission");
+            }
+            return errors;
+        } catch (SimpleJsonParser.JsonParseException ex) {
+            throw new QuizServiceException("Failed to parse submit JSON", ex);
+        }
+    }
+
+    private static byte[] buildBatchPayload(List<QuizKey> keys) {
+        try (JsonWriter writer = JsonWriter.acquire()) {
+            writer.beginObject().name("quizzes").beginArray();
+            for (QuizKey key : keys) {
+                writer.beginObject()
+                        .name("topic").value(key.getTopic())
+                        .name("questionCount").value(key.getQuestionCount())
+                        .name("difficulty").value(key.getDifficulty())
+                        .endObject();
+            }
+            return writer.endArray().endObject().toByteArray();
+        }
+    }
+
+    private static QuizData parseQuizData(InputStream body) throws IOException, QuizServiceException {
+        try {
+            return readQuizData(new JsonStreamReader(body));
+        } catch (SimpleJsonParser.JsonParseException ex) {
+            throw new QuizServiceException("Failed to parse quiz JSON", ex);
+        }
+    }
+
+    private static QuizData readStreamResponse(HttpResponse<InputStream> response, InputStream body,
+                                               Consumer<QuizQuestion> onQuestion) throws IOException, QuizServiceException {
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        if (!contentType.startsWith(NDJSON_TYPE)) {
+            // A backend without the streaming route may still answer with a whole quiz.
+            return parseQuizData(body);
+        }
+        try {
+            return readQuizStream(new JsonStreamReader(body), onQuestion);
+        } catch (SimpleJsonParser.JsonParseException ex) {
+            throw new QuizServiceException("Failed to parse quiz JSON", ex);
+        }
+    }
+
+    private static List<BatchResult> parseBatchResults(InputStream body, List<QuizKey> keys)
+            throws IOException, QuizServiceException {
+        try {
+            return readBatchResults(new JsonStreamReader(body), keys);
+        } catch (SimpleJsonParser.JsonParseException ex) {
+            throw new QuizServiceException("Failed to parse quiz JSON", ex);
         }
-        return null;
     }
 
-    private int asOptionalInteger(Object value, int fallback) {
-        if (value instanceof Number) {
-            return ((Number) value).intValue();
+    /**
+     * Binds a {@code {"results":[...]}} batch response, where each entry is either
+     * {@code {"quiz":{...}}} or {@code {"error":"..."}}, in request order.
+     */
+    static List<BatchResult> readBatchResults(JsonStreamReader reader, List<QuizKey> keys)
+            throws IOException, SimpleJsonParser.JsonParseException, QuizServiceException {
+        if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) {
+            throw new QuizServiceException("Batch payload root must be a JSON object");
+        }
+        List<BatchResult> results = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("results") || reader.peek() != JsonStreamReader.Token.BEGIN_ARRAY) {
+                reader.skipValue();
+                continue;
+            }
+            results = new ArrayList<>(keys.size());
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (results.size() == keys.size()) {
+                    throw new QuizServiceException("Batch payload has more results than requested quizzes");
+                }
+                results.add(readBatchResult(reader, keys.get(results.size())));
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        if (results == null) {
+            throw new QuizServiceException("Batch payload missing \"results\" array");
+        }
+        if (results.size() != keys.size()) {
+            throw new QuizServiceException("Batch payload has " + results.size() + " results for "
+                    + keys.size() + " quizzes");
         }
-        return fallback;
+        return results;
     }
 
-    private String escapeJson(String value) {
-        StringBuilder builder = new StringBuilder(value.length() + 16);
-        for (char c : value.toCharArray()) {
-            switch (c) {
-                case '"':
-                    builder.append("\\\"");
+    private static BatchResult readBatchResult(JsonStreamReader reader, QuizKey key)
+            throws IOException, SimpleJsonParser.JsonParseException, QuizServiceException {
+        if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) {
+            throw new QuizServiceException("Batch result entry should be an object");
+        }
+        QuizData quizData = null;
+        String error = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "quiz":
+                    if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) {
+                        throw new QuizServiceException("Batch quiz entry should be an object");
+                    }
+                    quizData = readQuizObject(reader);
                     break;
-                case '\\':
-                    builder.append("\\\\");
+                case "error":
+                    error = readOptionalString(reader);
                     break;
-                case '\b':
-                    builder.append("\\b");
+                default:
+                    reader.skipValue();
                     break;
-                case '\f':
-                    builder.append("\\f");
+            }
+        }
+        reader.endObject();
+        if (quizData != null) {
+            return new BatchResult(key, quizData, null);
+        }
+        return new BatchResult(key, null, new QuizServiceException(error != null ? error : "Quiz generation failed"));
+    }
+
+    /**
+     * Binds an NDJSON generate stream: {@code {"question":{...}}} lines, each reported
+     * to {@code onQuestion} as soon as it is complete, followed by a {@code {"done":{...}}}
+     * line with the quiz metadata. An {@code {"error":"..."}} line fails the stream.
+     */
+    static QuizData readQuizStream(JsonStreamReader reader, Consumer<QuizQuestion> onQuestion)
+            throws IOException, SimpleJsonParser.JsonParseException, QuizServiceException {
+        reader.setMultipleDocuments(true);
+        List<QuizQuestion> questions = new ArrayList<>();
+        while (reader.peek() != JsonStreamReader.Token.END_DOCUMENT) {
+            if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) {
+                throw new QuizServiceException("Quiz stream entries must be JSON objects");
+            }
+            QuizData quizData = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "question":
+                        if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) {
+                            throw new QuizServiceException("Question entry should be an object");
+                        }
+                        QuizQuestion question;
+                        try {
+                            question = QuizQuestion.fromJson(reader);
+                        } catch (IllegalArgumentException ex) {
+                            throw new QuizServiceException("Invalid question structure: " + ex.getMessage(), ex);
+                        }
+                        questions.add(question);
+                        onQuestion.accept(question);
+                        break;
+                    case "done":
+                        quizData = readStreamSummary(reader, questions);
+                        break;
+                    case "error":
+                        String message = readOptionalString(reader);
+                        throw new QuizServiceException(message != null ? message : "Quiz stream failed");
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            if (quizData != null) {
+                return quizData;
+            }
+        }
+        throw new QuizServiceException("Quiz stream ended before the quiz was complete");
+    }
+
+    private static QuizData readStreamSummary(JsonStreamReader reader, List<QuizQuestion> questions)
+            throws IOException, SimpleJsonParser.JsonParseException, QuizServiceException {
+        if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) {
+            throw new QuizServiceException("Quiz stream summary must be a JSON object");
+        }
+        String quizId = null;
+        String topic = null;
+        String difficulty = null;
+        Number questionCount = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "quizId":
+                    quizId = readOptionalString(reader);
                     break;
-                case '\n':
-                    builder.append("\\n");
+                case "topic":
+                    topic = readOptionalString(reader);
                     break;
-                case '\r':
-                    builder.append("\\r");
+                case "difficulty":
+                    difficulty = readOptionalString(reader);
                     break;
-                case '\t':
-                    builder.append("\\t");
+                case "questionCount":
+                    if (reader.peek() == JsonStreamReader.Token.NUMBER) {
+                        questionCount = reader.nextNumber();
+                    } else {
+                        reader.skipValue();
+                    }
                     break;
                 default:
-                    if (c < 0x20) {
-                        builder.append(String.format("\\u%04x", (int) c));
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        if (questions.isEmpty()) {
+            throw new QuizServiceException("Quiz payload returned zero questions");
+        }
+        int count = questionCount != null ? questionCount.intValue() : questions.size();
+        return new QuizData(quizId, topic, difficulty, count, questions);
+    }
+
+    /**
+     * Binds the generate response in a single pass over the token stream, so no
+     * intermediate Map/List tree is built for the payload.
+     */
+    static QuizData readQuizData(JsonStreamReader reader)
+            throws IOException, SimpleJsonParser.JsonParseException, QuizServiceException {
+        if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) {
+            throw new QuizServiceException("Quiz payload root must be a JSON object");
+        }
+        QuizData quizData = readQuizObject(reader);
+        if (reader.peek() != JsonStreamReader.Token.END_DOCUMENT) {
+            throw new SimpleJsonParser.JsonParseException("Unexpected characters after JSON content");
+        }
+        return quizData;
+    }
+
+    private static QuizData readQuizObject(JsonStreamReader reader)
+            throws IOException, SimpleJsonParser.JsonParseException, QuizServiceException {
+        List<QuizQuestion> questions = null;
+        String quizId = null;
+        String topic = null;
+        String difficulty = null;
+        Number questionCount = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "questions":
+                    questions = readQuestionsArray(reader);
+                    break;
+                case "quizId":
+                    quizId = readOptionalString(reader);
+                    break;
+                case "topic":
+                    topic = readOptionalString(reader);
+                    break;
+                case "difficulty":
+                    difficulty = readOptionalString(reader);
+                    break;
+                case "questionCount":
+                    if (reader.peek() == JsonStreamReader.Token.NUMBER) {
+                        questionCount = reader.nextNumber();
                     } else {
-                        builder.append(c);
+                        questionCount = null;
+                        reader.skipValue();
                     }
                     break;
+                default:
+                    reader.skipValue();
+                    break;
             }
         }
-        return builder.toString();
+        reader.endObject();
+
+        if (questions == null) {
+            throw new QuizServiceException("Quiz payload missing \"questions\" array");
+        }
+        if (questions.isEmpty()) {
+            throw new QuizServiceException("Quiz payload returned zero questions");
+        }
+        int count = questionCount != null ? questionCount.intValue() : questions.size();
+        return new QuizData(quizId, topic, difficulty, count, questions);
+    }
+
+    /**
+     * Reads only the top-level metadata of a stored generate response. The payload is
+     * indexed in one pass, but question bodies and unrelated fields are never decoded.
+     */
+    static QuizMetadata peekMetadata(byte[] payload) throws QuizServiceException {
+        try {
+            return peekMetadata(LazyJsonDocument.parse(payload).root());
+        } catch (SimpleJsonParser.JsonParseException ex) {
+            throw new QuizServiceException("Failed to parse quiz JSON", ex);
+        }
+    }
+
+    static QuizMetadata peekMetadata(LazyJsonDocument.Node root) throws QuizServiceException {
+        if (root.kind() != LazyJsonDocument.OBJECT) {
+            throw new QuizServiceException("Quiz payload root must be a JSON object");
+        }
+        LazyJsonDocument.Node questions = root.get("questions");
+        if (questions == null || questions.kind() != LazyJsonDocument.ARRAY) {
+            throw new QuizServiceException("Quiz payload missing \"questions\" array");
+        }
+        LazyJsonDocument.Node count = root.get("questionCount");
+        Number questionCount = count != null ? count.asNumber() : null;
+        return new QuizMetadata(
+                optionalString(root.get("quizId")),
+                optionalString(root.get("topic")),
+                optionalString(root.get("difficulty")),
+                questionCount != null ? questionCount.intValue() : questions.size()
+        );
+    }
+
+    private static String optionalString(LazyJsonDocument.Node node) {
+        return node != null ? node.asString() : null;
+    }
+
+    private static List<QuizQuestion> readQuestionsArray(JsonStreamReader reader)
+            throws IOException, SimpleJsonParser.JsonParseException, QuizServiceException {
+        if (reader.peek() != JsonStreamReader.Token.BEGIN_ARRAY) {
+            reader.skipValue();
+            return null;
+        }
+        List<QuizQuestion> questions = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonStreamReader.Token.BEGIN_OBJECT) {
+                throw new QuizServiceException("Question entry should be an object");
+            }
+            try {
+                questions.add(QuizQuestion.fromJson(reader));
+            } catch (IllegalArgumentException ex) {
+                throw new QuizServiceException("Invalid question structure: " + ex.getMessage(), ex);
+            }
+        }
+        reader.endArray();
+        return questions;
+    }
+
+    private static String readOptionalString(JsonStreamReader reader) throws IOException, SimpleJsonParser.JsonParseException {
+        if (reader.peek() == JsonStreamReader.Token.STRING) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+
+    private interface BodyReader<T> {
+        T read(HttpResponse<InputStream> response, InputStream body) throws IOException, QuizServiceException;
     }
 
     static class QuizData {
@@ -195,6 +1210,176 @@ class QuizService {
         }
     }
 
+    /**
+     * Identifies a quiz request by trimmed topic (compared case-insensitively),
+     * question count and difficulty.
+     */
+    static final class QuizKey {
+        private final String topic;
+        private final String matchTopic;
+        private final int questionCount;
+        private final String difficulty;
+
+        QuizKey(String topic, int questionCount, String difficulty) {
+            this.topic = topic != null ? topic.trim() : "";
+            this.matchTopic = this.topic.toLowerCase(Locale.ROOT);
+            this.questionCount = Math.max(1, questionCount);
+            this.difficulty = (difficulty != null ? difficulty.trim() : "medium").toLowerCase(Locale.ROOT);
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public int getQuestionCount() {
+            return questionCount;
+        }
+
+        public String getDifficulty() {
+            return difficulty;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof QuizKey)) {
+                return false;
+            }
+            QuizKey that = (QuizKey) other;
+            return questionCount == that.questionCount
+                    && matchTopic.equals(that.matchTopic)
+                    && difficulty.equals(that.difficulty);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(matchTopic, questionCount, difficulty);
+        }
+
+        @Override
+        public String toString() {
+            return matchTopic + "|" + questionCount + "|" + difficulty;
+        }
+    }
+
+    /**
+     * Outcome of one entry of a batch request: either its quiz or its own error.
+     */
+    static class BatchResult {
+        private final QuizKey key;
+        private final QuizData quizData;
+        private final QuizServiceException error;
+
+        BatchResult(QuizKey key, QuizData quizData, QuizServiceException error) {
+            this.key = key;
+            this.quizData = quizData;
+            this.error = error;
+        }
+
+        public QuizKey getKey() {
+            return key;
+        }
+
+        public QuizData getQuizData() {
+            return quizData;
+        }
+
+        public QuizServiceException getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return quizData != null;
+        }
+    }
+
+    static class QuizMetadata {
+        private final String quizId;
+        private final String topic;
+        private final String difficulty;
+        private final int questionCount;
+
+        QuizMetadata(String quizId, String topic, String difficulty, int questionCount) {
+            this.quizId = quizId;
+            this.topic = topic != null ? topic : "";
+            this.difficulty = difficulty != null ? difficulty : "medium";
+            this.questionCount = questionCount;
+        }
+
+        public String getQuizId() {
+            return quizId;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public String getDifficulty() {
+            return difficulty;
+        }
+
+        public int getQuestionCount() {
+            return questionCount;
+        }
+    }
+
+    /**
+     * What {@link #warmUpAsync()} achieved. Times are estimates of what the first quiz
+     * request would otherwise have spent: connection set-up (averaged over the backends
+     * that answered), cold parsing and loading the question bank.
+     */
+    static final class WarmUpReport {
+        private final int backends;
+        private final int backendsReached;
+        private final long connectionNanosSaved;
+        private final long parseNanosSaved;
+        private final long bankNanosSaved;
+
+        WarmUpReport(int backends, int backendsReached, long connectionNanosSaved, long parseNanosSaved,
+                     long bankNanosSaved) {
+            this.backends = backends;
+            this.backendsReached = backendsReached;
+            this.connectionNanosSaved = connectionNanosSaved;
+            this.parseNanosSaved = parseNanosSaved;
+            this.bankNanosSaved = bankNanosSaved;
+        }
+
+        public int getBackends() {
+            return backends;
+        }
+
+        public int getBackendsReached() {
+            return backendsReached;
+        }
+
+        public long getConnectionMillisSaved() {
+            return TimeUnit.NANOSECONDS.toMillis(connectionNanosSaved);
+        }
+
+        public long getParseMillisSaved() {
+            return TimeUnit.NANOSECONDS.toMillis(parseNanosSaved);
+        }
+
+        public long getBankMillisSaved() {
+            return TimeUnit.NANOSECONDS.toMillis(bankNanosSaved);
+        }
+
+        public long getMillisSaved() {
+            return TimeUnit.NANOSECONDS.toMillis(connectionNanosSaved + parseNanosSaved + bankNanosSaved);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "Warm-up saved about %d ms on the first quiz (%d ms connecting to %d of %d backends, "
+                            + "%d ms parsing, %d ms loading the question bank)",
+                    getMillisSaved(), getConnectionMillisSaved(), backendsReached, backends,
+                    getParseMillisSaved(), getBankMillisSaved());
+        }
+    }
+
     static class QuizServiceException extends Exception {
         QuizServiceException(String message) {
             super(message);
@@ -204,4 +1389,15 @@ class QuizService {
             super(message, cause);
         }
     }
+
+    /**
+     * The backend could not be reached or answered that it is overloaded or broken.
+     */
+    private static final class BackendUnavailableException extends QuizServiceException {
+        private static final long serialVersionUID = 1L;
+
+        BackendUnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
 }
@@ -0,0 +1,61 @@
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends one backend request and hands back the response with its body still to be
+ * read. {@link QuizService} does everything above this (decoding, parsing, caching),
+ * so swapping the transport makes those layers measurable without a live backend.
+ */
+interface QuizTransport {
+
+    /** Which transport {@link #fromSettings} builds. */
+    enum Kind {
+        /** Talk to the backend. */
+        HTTP,
+        /** Talk to the backend and append every completed exchange to the exchange log. */
+        RECORD,
+        /** Answer from the exchange log without any network access. */
+        REPLAY
+    }
+
+    /**
+     * @param request the request as built for the network, including any gzipped body
+     * @param payload the uncompressed request body, used to identify the exchange
+     */
+    CompletableFuture<HttpResponse<InputStream>> send(HttpRequest request, byte[] payload);
+
+    static QuizTransport http(HttpClient client) {
+        return (request, payload) -> client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    /**
+     * The transport selected by {@code quizmaster.transport}. Background traffic that
+     * does not go through the transport checks this to stay off the network in
+     * {@link Kind#REPLAY}.
+     */
+    static Kind configuredKind() {
+        return ClientSettings.enumValue("transport", Kind.HTTP);
+    }
+
+    /**
+     * Reads {@code quizmaster.transport} ({@code HTTP}, {@code RECORD} or {@code REPLAY}),
+     * {@code quizmaster.transport.file} and {@code quizmaster.transport.replaySpeed}.
+     */
+    static QuizTransport fromSettings(HttpClient client) {
+        Path file = Paths.get(ClientSettings.stringValue("transport.file", "user-data/exchanges.bin"));
+        switch (configuredKind()) {
+            case RECORD:
+                return new RecordingTransport(http(client), new ExchangeLog(file));
+            case REPLAY:
+                return new ReplayTransport(new ExchangeLog(file),
+                        ClientSettings.doubleValue("transport.replaySpeed", 1.0));
+            default:
+                return http(client);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Passes requests through to another transport and appends each exchange to an
+ * {@link ExchangeLog} once its body has been read to the end. Body chunks are recorded
+ * with the time they reached the reader, so streamed responses replay with the same
+ * pacing. Exchanges that fail or are abandoned part-way are not recorded.
+ */
+final class RecordingTransport implements QuizTransport {
+
+    private final QuizTransport delegate;
+    private final ExchangeLog log;
+
+    RecordingTransport(QuizTransport delegate, ExchangeLog log) {
+        this.delegate = delegate;
+        this.log = log;
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse<InputStream>> send(HttpRequest request, byte[] payload) {
+        long sentAt = System.nanoTime();
+        return delegate.send(request, payload).thenApply(response -> {
+            long headersNanos = System.nanoTime() - sentAt;
+            return new RecordedResponse(response, new RecordingStream(response.body(), sentAt, exchange ->
+                    new ExchangeLog.Exchange(request.method(), request.uri().getPath(), payload.clone(),
+                            response.statusCode(), headersNanos, new TreeMap<>(response.headers().map()), exchange)));
+        });
+    }
+
+    private interface ExchangeFactory {
+        ExchangeLog.Exchange create(List<ExchangeLog.Chunk> chunks);
+    }
+
+    private final class RecordingStream extends FilterInputStream {
+        private final long sentAt;
+        private final ExchangeFactory factory;
+        private final List<ExchangeLog.Chunk> chunks = new ArrayList<>();
+        private boolean finished;
+
+        RecordingStream(InputStream in, long sentAt, ExchangeFactory factory) {
+            super(in);
+            this.sentAt = sentAt;
+            this.factory = factory;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = in.read(buffer, offset, length);
+            if (read > 0) {
+                chunks.add(new ExchangeLog.Chunk(System.nanoTime() - sentAt,
+                        Arrays.copyOfRange(buffer, offset, offset + read)));
+            } else if (read == -1) {
+                finish();
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            // Skipped bytes must still be recorded.
+            byte[] buffer = new byte[(int) Math.min(count, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        private void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            try {
+                log.append(factory.create(chunks));
+            } catch (IOException ignored) {
+                // Recording is best effort; the caller still gets its response.
+            }
+        }
+    }
+
+    /**
+     * The delegate's response with the body swapped for the recording stream.
+     */
+    private static final class RecordedResponse implements HttpResponse<InputStream> {
+        private final HttpResponse<InputStream> response;
+        private final InputStream body;
+
+        RecordedResponse(HttpResponse<InputStream> response, InputStream body) {
+            this.response = response;
+            this.body = body;
+        }
+
+        @Override
+        public int statusCode() {
+            return response.statusCode();
+        }
+
+        @Override
+        public HttpRequest request() {
+            return response.request();
+        }
+
+        @Override
+        public Optional<HttpResponse<InputStream>> previousResponse() {
+            return response.previousResponse();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return response.headers();
+        }
+
+        @Override
+        public InputStream body() {
+            return body;
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return response.sslSession();
+        }
+
+        @Override
+        public URI uri() {
+            return response.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return response.version();
+        }
+    }
+}
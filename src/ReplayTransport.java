@@ -0,0 +1,229 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Answers requests from an {@link ExchangeLog} without touching the network. A request
+ * is matched on method, path and uncompressed body. When several exchanges match, they
+ * are served in recorded order and then round-robin, so a replayed run sees the same
+ * sequence every time. The headers and each body chunk are released at their recorded
+ * times divided by {@code speed}; a speed of 0 serves everything immediately.
+ */
+final class ReplayTransport implements QuizTransport {
+
+    private final double speed;
+    private final Map<Key, Deque<ExchangeLog.Exchange>> exchanges = new HashMap<>();
+
+    ReplayTransport(ExchangeLog log, double speed) {
+        this.speed = Math.max(0, speed);
+        try {
+            for (ExchangeLog.Exchange exchange : log.readAll()) {
+                exchanges.computeIfAbsent(new Key(exchange.method, exchange.path, exchange.payload),
+                        ignored -> new ArrayDeque<>()).add(exchange);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read exchange log " + log.file(), ex);
+        }
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse<InputStream>> send(HttpRequest request, byte[] payload) {
+        long sentAt = System.nanoTime();
+        ExchangeLog.Exchange exchange = next(new Key(request.method(), request.uri().getPath(), payload));
+        if (exchange == null) {
+            return CompletableFuture.failedFuture(
+                    new IOException("No recorded exchange for " + request.method() + " " + request.uri().getPath()));
+        }
+        HttpResponse<InputStream> response = new ReplayedResponse(request, exchange,
+                new ReplayStream(exchange.chunks, sentAt));
+        long delay = scaled(exchange.headersNanos);
+        if (delay <= 0) {
+            return CompletableFuture.completedFuture(response);
+        }
+        return CompletableFuture.supplyAsync(() -> response,
+                CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS));
+    }
+
+    private synchronized ExchangeLog.Exchange next(Key key) {
+        Deque<ExchangeLog.Exchange> queue = exchanges.get(key);
+        if (queue == null) {
+            return null;
+        }
+        ExchangeLog.Exchange exchange = queue.pollFirst();
+        queue.addLast(exchange);
+        return exchange;
+    }
+
+    private long scaled(long nanos) {
+        return speed == 0 ? 0 : (long) (nanos / speed);
+    }
+
+    private static final class Key {
+        private final String method;
+        private final String path;
+        private final byte[] payload;
+
+        Key(String method, String path, byte[] payload) {
+            this.method = method;
+            this.path = path;
+            this.payload = payload;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) other;
+            return method.equals(that.method) && path.equals(that.path) && Arrays.equals(payload, that.payload);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * method.hashCode() + path.hashCode()) + Arrays.hashCode(payload);
+        }
+    }
+
+    /**
+     * Releases each recorded chunk once its time has come. Closing the stream wakes a
+     * reader that is waiting, the way closing a network body aborts a blocked read.
+     */
+    private final class ReplayStream extends InputStream {
+        private final List<ExchangeLog.Chunk> chunks;
+        private final long sentAt;
+        private int chunkIndex;
+        private int chunkOffset;
+        private boolean closed;
+
+        ReplayStream(List<ExchangeLog.Chunk> chunks, long sentAt) {
+            this.chunks = new ArrayList<>(chunks);
+            this.sentAt = sentAt;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public synchronized int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (true) {
+                if (closed) {
+                    throw new IOException("Stream closed");
+                }
+                if (chunkIndex == chunks.size()) {
+                    return -1;
+                }
+                ExchangeLog.Chunk chunk = chunks.get(chunkIndex);
+                long waitNanos = sentAt + scaled(chunk.atNanos) - System.nanoTime();
+                if (waitNanos > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while replaying response body");
+                    }
+                    continue;
+                }
+                int count = Math.min(length, chunk.bytes.length - chunkOffset);
+                System.arraycopy(chunk.bytes, chunkOffset, buffer, offset, count);
+                chunkOffset += count;
+                if (chunkOffset == chunk.bytes.length) {
+                    chunkIndex++;
+                    chunkOffset = 0;
+                }
+                return count;
+            }
+        }
+
+        @Override
+        public synchronized int available() {
+            if (closed || chunkIndex == chunks.size()) {
+                return 0;
+            }
+            ExchangeLog.Chunk chunk = chunks.get(chunkIndex);
+            boolean due = sentAt + scaled(chunk.atNanos) - System.nanoTime() <= 0;
+            return due ? chunk.bytes.length - chunkOffset : 0;
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+    }
+
+    private static final class ReplayedResponse implements HttpResponse<InputStream> {
+        private final HttpRequest request;
+        private final ExchangeLog.Exchange exchange;
+        private final InputStream body;
+
+        ReplayedResponse(HttpRequest request, ExchangeLog.Exchange exchange, InputStream body) {
+            this.request = request;
+            this.exchange = exchange;
+            this.body = body;
+        }
+
+        @Override
+        public int statusCode() {
+            return exchange.status;
+        }
+
+        @Override
+        public HttpRequest request() {
+            return request;
+        }
+
+        @Override
+        public Optional<HttpResponse<InputStream>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return HttpHeaders.of(exchange.headers, (name, value) -> true);
+        }
+
+        @Override
+        public InputStream body() {
+            return body;
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return request.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+}
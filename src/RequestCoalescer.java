@@ -0,0 +1,109 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight helper: concurrent callers asking for the same key share one
+ * in-flight operation and its result. Each caller gets its own future, so a caller
+ * that cancels detaches without affecting the others; the shared operation is only
+ * cancelled once every waiter has gone.
+ */
+final class RequestCoalescer<K, V> {
+
+    private final ConcurrentMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    CompletableFuture<V> join(K key, Supplier<CompletableFuture<V>> starter) {
+        while (true) {
+            Flight<V> flight = inFlight.get(key);
+            if (flight == null) {
+                Flight<V> created = new Flight<>();
+                flight = inFlight.putIfAbsent(key, created);
+                if (flight == null) {
+                    CompletableFuture<V> waiter = created.attach();
+                    created.shared.whenComplete((value, failure) -> inFlight.remove(key, created));
+                    try {
+                        relay(starter.get(), created.shared);
+                    } catch (RuntimeException ex) {
+                        created.shared.completeExceptionally(ex);
+                    }
+                    return waiter;
+                }
+            }
+            CompletableFuture<V> waiter = flight.attach();
+            if (waiter != null) {
+                coalesced.incrementAndGet();
+                return waiter;
+            }
+            // The flight finished or was abandoned between lookup and attach; retry.
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Number of callers that were served by an already running operation.
+     */
+    long coalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * Completes {@code target} with the outcome of {@code source}, and cancels
+     * {@code source} if {@code target} is cancelled first.
+     */
+    private static <T> void relay(CompletableFuture<T> source, CompletableFuture<T> target) {
+        source.whenComplete((value, failure) -> {
+            if (failure != null) {
+                target.completeExceptionally(failure);
+            } else {
+                target.complete(value);
+            }
+        });
+        target.whenComplete((value, failure) -> {
+            if (target.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+    }
+
+    private static final class Flight<V> {
+        final CompletableFuture<V> shared = new CompletableFuture<>();
+        private int waiters;
+        private boolean closed;
+
+        synchronized CompletableFuture<V> attach() {
+            if (closed || shared.isDone()) {
+                return null;
+            }
+            waiters++;
+            CompletableFuture<V> waiter = new CompletableFuture<>();
+            shared.whenComplete((value, failure) -> {
+                if (failure != null) {
+                    waiter.completeExceptionally(failure);
+                } else {
+                    waiter.complete(value);
+                }
+            });
+            waiter.whenComplete((value, failure) -> {
+                if (waiter.isCancelled()) {
+                    detach();
+                }
+            });
+            return waiter;
+        }
+
+        private void detach() {
+            synchronized (this) {
+                waiters--;
+                if (waiters > 0 || shared.isDone()) {
+                    return;
+                }
+                closed = true;
+            }
+            // Completing the shared future also removes it from the in-flight map.
+            shared.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,404 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Latency and failure handling around backend attempts:
+ * <ul>
+ *     <li>hedging: a duplicate attempt is started once the first one has taken longer than
+ *     the recent p95 latency, and whichever answers first wins;</li>
+ *     <li>retries with full-jitter exponential backoff, limited by a global retry budget so
+ *     an outage does not multiply the load on the backend;</li>
+ *     <li>a circuit breaker that fails fast after repeated failures and lets a single trial
+ *     request through once the open period has passed.</li>
+ * </ul>
+ * Hedges and retries both draw from the retry budget.
+ */
+final class ResiliencePolicy {
+
+    private static final int LATENCY_WINDOW = 128;
+    private static final int MIN_LATENCY_SAMPLES = 10;
+    private static final double BUDGET_CAPACITY = 10.0;
+
+    private final Executor executor;
+    private final boolean hedgingEnabled;
+    private final double hedgePercentile;
+    private final long minHedgeDelayMillis;
+    private final int maxRetries;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final double budgetRatio;
+    private final double budgetPerSecond;
+    private final int breakerThreshold;
+    private final long breakerOpenNanos;
+    private final Duration attemptTimeout;
+
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private int latencyCount;
+    private int latencyNext;
+
+    private double budget = BUDGET_CAPACITY;
+    private long budgetRefilledAt = System.nanoTime();
+
+    private BreakerState breakerState = BreakerState.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+    private boolean trialInFlight;
+
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong budgetDenials = new AtomicLong();
+    private final AtomicLong breakerOpens = new AtomicLong();
+    private final AtomicLong breakerRejections = new AtomicLong();
+
+    private enum BreakerState {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    ResiliencePolicy(Executor executor, boolean hedgingEnabled, double hedgePercentile, long minHedgeDelayMillis,
+                     int maxRetries, long backoffMillis, long maxBackoffMillis, double budgetRatio,
+                     double budgetPerSecond, int breakerThreshold, long breakerOpenMillis, Duration attemptTimeout) {
+        this.executor = executor;
+        this.hedgingEnabled = hedgingEnabled;
+        this.hedgePercentile = Math.min(Math.max(hedgePercentile, 0.5), 0.999);
+        this.minHedgeDelayMillis = Math.max(0, minHedgeDelayMillis);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.backoffMillis = Math.max(1, backoffMillis);
+        this.maxBackoffMillis = Math.max(this.backoffMillis, maxBackoffMillis);
+        this.budgetRatio = Math.max(0, budgetRatio);
+        this.budgetPerSecond = Math.max(0, budgetPerSecond);
+        this.breakerThreshold = Math.max(1, breakerThreshold);
+        this.breakerOpenNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, breakerOpenMillis));
+        this.attemptTimeout = attemptTimeout;
+    }
+
+    static ResiliencePolicy fromSettings(Executor executor) {
+        return new ResiliencePolicy(
+                executor,
+                ClientSettings.booleanValue("hedge.enabled", true),
+                ClientSettings.doubleValue("hedge.percentile", 0.95),
+                ClientSettings.longValue("hedge.minDelayMillis", 1000),
+                ClientSettings.intValue("retry.maxRetries", 2),
+                ClientSettings.longValue("retry.backoffMillis", 250),
+                ClientSettings.longValue("retry.maxBackoffMillis", 4000),
+                ClientSettings.doubleValue("retry.budgetRatio", 0.2),
+                ClientSettings.doubleValue("retry.budgetPerSecond", 0.2),
+                ClientSettings.intValue("breaker.failureThreshold", 5),
+                ClientSettings.longValue("breaker.openSeconds", 15) * 1000L,
+                Duration.ofSeconds(Math.max(1, ClientSettings.longValue("request.timeoutSeconds", 60)))
+        );
+    }
+
+    /**
+     * Time allowed for a single attempt to receive response headers.
+     */
+    Duration attemptTimeout() {
+        return attemptTimeout;
+    }
+
+    /**
+     * Runs {@code attempt} under the policy. Only failures accepted by {@code retryable}
+     * are retried or counted against the breaker; anything else fails the call at once.
+     * Attempts must be safe to run more than once, and {@code hedgeable} ones must also be
+     * safe to run concurrently. Cancelling the returned future cancels every attempt.
+     */
+    <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> attempt, boolean hedgeable,
+                                     Predicate<Throwable> retryable) {
+        if (!tryAcquireBreaker()) {
+            breakerRejections.incrementAndGet();
+            long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(openUntilNanos() - System.nanoTime()));
+            return CompletableFuture.failedFuture(new QuizService.QuizServiceException(
+                    "Quiz backend is unavailable; try again in " + seconds + "s"));
+        }
+        depositBudget();
+        Call<T> call = new Call<>(attempt, hedgeable, retryable);
+        call.start();
+        return call.result;
+    }
+
+    Stats stats() {
+        return new Stats(hedges.get(), hedgeWins.get(), retries.get(), budgetDenials.get(),
+                breakerOpens.get(), breakerRejections.get());
+    }
+
+    private final class Call<T> {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        private final Supplier<CompletableFuture<T>> attempt;
+        private final boolean hedgeable;
+        private final Predicate<Throwable> retryable;
+        // Guarded by this.
+        private final List<CompletableFuture<T>> running = new ArrayList<>(2);
+        private int retriesUsed;
+
+        Call(Supplier<CompletableFuture<T>> attempt, boolean hedgeable, Predicate<Throwable> retryable) {
+            this.attempt = attempt;
+            this.hedgeable = hedgeable;
+            this.retryable = retryable;
+        }
+
+        void start() {
+            result.whenComplete((value, failure) -> {
+                if (result.isCancelled()) {
+                    releaseBreakerTrial();
+                }
+                cancelRunning();
+            });
+            launch(false);
+        }
+
+        private void launch(boolean hedge) {
+            CompletableFuture<T> future;
+            try {
+                future = attempt.get();
+            } catch (RuntimeException ex) {
+                future = CompletableFuture.failedFuture(ex);
+            }
+            long startedAt = System.nanoTime();
+            synchronized (this) {
+                if (result.isDone()) {
+                    future.cancel(true);
+                    return;
+                }
+                running.add(future);
+            }
+            CompletableFuture<T> launched = future;
+            launched.whenComplete((value, failure) -> onAttemptDone(launched, hedge, startedAt, value, failure));
+            long hedgeDelay = hedge || !hedgeable || !hedgingEnabled ? -1 : hedgeDelayMillis();
+            if (hedgeDelay >= 0) {
+                CompletableFuture.delayedExecutor(hedgeDelay, TimeUnit.MILLISECONDS, executor)
+                        .execute(() -> hedge(launched));
+            }
+        }
+
+        private void hedge(CompletableFuture<T> primary) {
+            synchronized (this) {
+                // Only hedge an attempt that is still the sole one running.
+                if (result.isDone() || running.size() != 1 || running.get(0) != primary) {
+                    return;
+                }
+            }
+            if (!isBreakerClosed()) {
+                return;
+            }
+            if (!withdrawBudget()) {
+                budgetDenials.incrementAndGet();
+                return;
+            }
+            hedges.incrementAndGet();
+            launch(true);
+        }
+
+        private void onAttemptDone(CompletableFuture<T> future, boolean hedge, long startedAt, T value, Throwable failure) {
+            boolean othersRunning;
+            synchronized (this) {
+                running.remove(future);
+                othersRunning = !running.isEmpty();
+            }
+            if (result.isDone()) {
+                return;
+            }
+            if (failure == null) {
+                recordBreakerSuccess();
+                if (hedgeable) {
+                    recordLatency(System.nanoTime() - startedAt);
+                }
+                if (hedge) {
+                    hedgeWins.incrementAndGet();
+                }
+                result.complete(value);
+                return;
+            }
+            boolean canRetry = retryable.test(failure);
+            if (canRetry) {
+                recordBreakerFailure();
+            } else {
+                // The backend answered, so it is reachable even though the request failed.
+                recordBreakerSuccess();
+            }
+            if (othersRunning) {
+                return;
+            }
+            if (canRetry && retriesUsed < maxRetries && isBreakerClosed()) {
+                if (withdrawBudget()) {
+                    retriesUsed++;
+                    retries.incrementAndGet();
+                    CompletableFuture.delayedExecutor(backoffMillis(retriesUsed), TimeUnit.MILLISECONDS, executor)
+                            .execute(() -> launch(false));
+                    return;
+                }
+                budgetDenials.incrementAndGet();
+            }
+            result.completeExceptionally(failure);
+        }
+
+        private void cancelRunning() {
+            List<CompletableFuture<T>> pending;
+            synchronized (this) {
+                pending = new ArrayList<>(running);
+                running.clear();
+            }
+            for (CompletableFuture<T> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private long backoffMillis(int retry) {
+        long ceiling = Math.min(maxBackoffMillis, backoffMillis << Math.min(retry - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private long hedgeDelayMillis() {
+        long[] window;
+        synchronized (latencies) {
+            if (latencyCount < MIN_LATENCY_SAMPLES) {
+                return -1;
+            }
+            window = Arrays.copyOf(latencies, latencyCount);
+        }
+        Arrays.sort(window);
+        int index = (int) Math.ceil(hedgePercentile * window.length) - 1;
+        long percentile = TimeUnit.NANOSECONDS.toMillis(window[Math.max(0, index)]);
+        return Math.max(minHedgeDelayMillis, percentile);
+    }
+
+    private void recordLatency(long nanos) {
+        synchronized (latencies) {
+            latencies[latencyNext] = nanos;
+            latencyNext = (latencyNext + 1) % LATENCY_WINDOW;
+            latencyCount = Math.min(latencyCount + 1, LATENCY_WINDOW);
+        }
+    }
+
+    private synchronized void depositBudget() {
+        refillBudget();
+        budget = Math.min(BUDGET_CAPACITY, budget + budgetRatio);
+    }
+
+    private synchronized boolean withdrawBudget() {
+        refillBudget();
+        if (budget < 1.0) {
+            return false;
+        }
+        budget -= 1.0;
+        return true;
+    }
+
+    private void refillBudget() {
+        long now = System.nanoTime();
+        double seconds = (now - budgetRefilledAt) / 1e9;
+        budgetRefilledAt = now;
+        budget = Math.min(BUDGET_CAPACITY, budget + seconds * budgetPerSecond);
+    }
+
+    private synchronized boolean tryAcquireBreaker() {
+        switch (breakerState) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openUntil < 0) {
+                    return false;
+                }
+                breakerState = BreakerState.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    private synchronized boolean isBreakerClosed() {
+        return breakerState == BreakerState.CLOSED;
+    }
+
+    private synchronized long openUntilNanos() {
+        return openUntil;
+    }
+
+    private synchronized void recordBreakerSuccess() {
+        breakerState = BreakerState.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    private synchronized void recordBreakerFailure() {
+        consecutiveFailures++;
+        if (breakerState == BreakerState.HALF_OPEN
+                || (breakerState == BreakerState.CLOSED && consecutiveFailures >= breakerThreshold)) {
+            breakerState = BreakerState.OPEN;
+            openUntil = System.nanoTime() + breakerOpenNanos;
+            trialInFlight = false;
+            breakerOpens.incrementAndGet();
+        }
+    }
+
+    private synchronized void releaseBreakerTrial() {
+        if (breakerState == BreakerState.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    static final class Stats {
+        private final long hedges;
+        private final long hedgeWins;
+        private final long retries;
+        private final long budgetDenials;
+        private final long breakerOpens;
+        private final long breakerRejections;
+
+        Stats(long hedges, long hedgeWins, long retries, long budgetDenials, long breakerOpens, long breakerRejections) {
+            this.hedges = hedges;
+            this.hedgeWins = hedgeWins;
+            this.retries = retries;
+            this.budgetDenials = budgetDenials;
+            this.breakerOpens = breakerOpens;
+            this.breakerRejections = breakerRejections;
+        }
+
+        public long getHedges() {
+            return hedges;
+        }
+
+        public long getHedgeWins() {
+            return hedgeWins;
+        }
+
+        public long getRetries() {
+            return retries;
+        }
+
+        public long getBudgetDenials() {
+            return budgetDenials;
+        }
+
+        public long getBreakerOpens() {
+            return breakerOpens;
+        }
+
+        public long getBreakerRejections() {
+            return breakerRejections;
+        }
+
+        @Override
+        public String toString() {
+            return "hedges=" + hedges + ", hedgeWins=" + hedgeWins + ", retries=" + retries
+                    + ", budgetDenials=" + budgetDenials + ", breakerOpens=" + breakerOpens
+                    + ", breakerRejections=" + breakerRejections;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads finished quizzes to the backend's results collection in the background.
+ * Each submission is first appended to an outbox file under {@code user-data/} and
+ * synced, so it survives crashes and network outages. Submissions made close
+ * together are sent as one bulk request. Failed uploads are retried with backoff.
+ * Every step runs on a single worker thread, so callers (the EDT) never wait on
+ * disk or network.
+ */
+final class ResultUploader {
+
+    private static final String DATA_DIRECTORY = "user-data";
+    private static final String OUTBOX_FILE = "result-outbox.jsonl";
+
+    private final QuizService quizService;
+    private final Path outbox;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long delayMillis;
+    private final long maxBackoffMillis;
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "result-upload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Confined to the worker thread.
+    private final List<Submission> pending = new ArrayList<>();
+    private boolean loaded;
+    private boolean flushScheduled;
+    private boolean uploading;
+    private long backoffMillis;
+
+    ResultUploader(QuizService quizService, Path outbox, boolean enabled,
+                   int batchSize, long delayMillis, long maxBackoffMillis) {
+        this.quizService = quizService;
+        this.outbox = outbox;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.delayMillis = Math.max(0, delayMillis);
+        this.maxBackoffMillis = Math.max(this.delayMillis, maxBackoffMillis);
+    }
+
+    /**
+     * Uploads are off when replaying: every submission carries a fresh id, so it can never
+     * match a recorded exchange.
+     */
+    static ResultUploader fromSettings(QuizService quizService) {
+        return new ResultUploader(
+                quizService,
+                Paths.get(DATA_DIRECTORY, OUTBOX_FILE),
+                ClientSettings.booleanValue("upload.enabled", true)
+                        && QuizTransport.configuredKind() != QuizTransport.Kind.REPLAY,
+                ClientSettings.intValue("upload.batchSize", 50),
+                ClientSettings.longValue("upload.delayMillis", 2000),
+                ClientSettings.longValue("upload.maxBackoffSeconds", 300) * 1000L
+        );
+    }
+
+    /**
+     * Uploads whatever an earlier session left in the outbox. Safe to call repeatedly.
+     */
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        worker.execute(() -> {
+            ensureLoaded();
+            if (!pending.isEmpty()) {
+                scheduleFlush(0);
+            }
+        });
+    }
+
+    /**
+     * Queues a finished quiz for upload. Quizzes without a backend id (assembled from
+     * the question bank or from several generation requests) are skipped, because the
+     * backend scores answers against its stored copy.
+     */
+    void submit(String user, String quizId, int[] answers) {
+        if (!enabled || quizId == null || quizId.isEmpty()) {
+            return;
+        }
+        int[] copy = answers.clone();
+        long submittedAt = System.currentTimeMillis();
+        worker.execute(() -> {
+            // Generated here: the first UUID seeds SecureRandom, which can be slow.
+            Submission submission = new Submission(UUID.randomUUID().toString(), user, quizId, copy, submittedAt);
+            ensureLoaded();
+            append(submission);
+            pending.add(submission);
+            scheduleFlush(delayMillis);
+        });
+    }
+
+    private void scheduleFlush(long delay) {
+        if (flushScheduled || uploading) {
+            return;
+        }
+        flushScheduled = true;
+        worker.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        if (uploading || pending.isEmpty()) {
+            return;
+        }
+        if (quizService.foregroundFetches() > 0) {
+            // A user is waiting on the backend; results can wait a little longer.
+            scheduleFlush(delayMillis);
+            return;
+        }
+        List<Submission> batch = new ArrayList<>(pending.subList(0, Math.min(batchSize, pending.size())));
+        uploading = true;
+        quizService.uploadResultsAsync(batch)
+                .whenComplete((errors, failure) -> worker.execute(() -> onUploaded(batch, failure)));
+    }
+
+    private void onUploaded(List<Submission> batch, Throwable failure) {
+        uploading = false;
+        if (failure != null) {
+            backoffMillis = backoffMillis == 0 ? Math.max(delayMillis, 1000) : Math.min(maxBackoffMillis, backoffMillis * 2);
+            scheduleFlush(backoffMillis);
+            return;
+        }
+        backoffMillis = 0;
+        // Entries the backend rejected (say, for a quiz it no longer has) would be
+        // rejected again on every retry, so they leave the outbox along with the rest.
+        pending.removeAll(batch);
+        rewriteOutbox();
+        if (!pending.isEmpty()) {
+            scheduleFlush(0);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        byte[] contents;
+        try {
+            contents = Files.readAllBytes(outbox);
+        } catch (IOException ignored) {
+            // No outbox yet, or unreadable; start empty.
+            return;
+        }
+        boolean damaged = false;
+        for (String line : new String(contents, StandardCharsets.UTF_8).split("\n")) {
+            Submission submission = Submission.parse(line);
+            if (submission != null) {
+                pending.add(submission);
+            } else if (!line.isBlank()) {
+                damaged = true;
+            }
+        }
+        if (damaged || (contents.length > 0 && contents[contents.length - 1] != '\n')) {
+            // A line torn by a crash would otherwise swallow the next appended entry.
+            rewriteOutbox();
+        }
+    }
+
+    private void append(Submission submission) {
+        byte[] line = submission.toJsonLine();
+        try {
+            Files.createDirectories(outbox.getParent());
+            try (FileChannel channel = FileChannel.open(outbox, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(line);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+        } catch (IOException ignored) {
+            // Still uploaded from memory; it just would not survive a crash.
+        }
+    }
+
+    private void rewriteOutbox() {
+        try {
+            if (pending.isEmpty()) {
+                Files.deleteIfExists(outbox);
+                return;
+            }
+            Path temp = outbox.resolveSibling(outbox.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (Submission submission : pending) {
+                    ByteBuffer buffer = ByteBuffer.wrap(submission.toJsonLine());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                channel.force(false);
+            }
+            Files.move(temp, outbox, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ignored) {
+            // The old outbox is still intact; uploaded entries are resent and the backend
+            // recognises them by id.
+        }
+    }
+
+    /**
+     * One finished quiz waiting to be uploaded. The id lets the backend ignore a
+     * submission it already stored.
+     */
+    static final class Submission {
+        private final String id;
+        private final String user;
+        private final String quizId;
+        private final int[] answers;
+        private final long submittedAt;
+
+        Submission(String id, String user, String quizId, int[] answers, long submittedAt) {
+            this.id = id;
+            this.user = user;
+            this.quizId = quizId;
+            this.answers = answers;
+            this.submittedAt = submittedAt;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        String getUser() {
+            return user;
+        }
+
+        String getQuizId() {
+            return quizId;
+        }
+
+        int[] getAnswers() {
+            return answers.clone();
+        }
+
+        long getSubmittedAt() {
+            return submittedAt;
+        }
+
+        private byte[] toJsonLine() {
+            try (JsonWriter writer = JsonWriter.acquire()) {
+                writer.beginObject()
+                        .name("id").value(id)
+                        .name("user").value(user)
+                        .name("quizId").value(quizId)
+                        .name("answers").beginArray();
+                for (int answer : answers) {
+                    writer.value(answer);
+                }
+                writer.endArray()
+                        .name("submittedAt").value(submittedAt)
+                        .endObject();
+                byte[] json = writer.toByteArray();
+                byte[] line = new byte[json.length + 1];
+                System.arraycopy(json, 0, line, 0, json.length);
+                line[json.length] = '\n';
+                return line;
+            }
+        }
+
+        /**
+         * Returns {@code null} for lines that cannot be read back, such as one torn by
+         * a crash while it was being appended.
+         */
+        @SuppressWarnings("unchecked")
+        private static Submission parse(String line) {
+            if (line.isBlank()) {
+                return null;
+            }
+            try {
+                Object parsed = SimpleJsonParser.parse(line);
+                if (!(parsed instanceof Map)) {
+                    return null;
+                }
+                Map<String, Object> map = (Map<String, Object>) parsed;
+                Object answersValue = map.get("answers");
+                if (!(map.get("id") instanceof String) || !(map.get("quizId") instanceof String)
+                        || !(answersValue instanceof List) || !(map.get("submittedAt") instanceof Number)) {
+                    return null;
+                }
+                List<Object> rawAnswers = (List<Object>) answersValue;
+                int[] answers = new int[rawAnswers.size()];
+                for (int i = 0; i < answers.length; i++) {
+                    Object answer = rawAnswers.get(i);
+                    answers[i] = answer instanceof Number ? ((Number) answer).intValue() : -1;
+                }
+                Object user = map.get("user");
+                return new Submission((String) map.get("id"), user instanceof String ? (String) user : null,
+                        (String) map.get("quizId"), answers, ((Number) map.get("submittedAt")).longValue());
+            } catch (SimpleJsonParser.JsonParseException ex) {
+                return null;
+            }
+        }
+    }
+}
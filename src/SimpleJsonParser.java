@@ -1,3 +1,5 @@
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -9,6 +11,26 @@ import java.util.Map;
  */
 public final class SimpleJsonParser {
 
+    /**
+     * Object keys used by the quiz payloads. Parsed keys that match one of these reuse
+     * the interned instance instead of allocating a new String per occurrence.
+     */
+    private static final String[] CANONICAL_KEYS = {
+            "question", "prompt", "options", "answerIndex", "correctIndex", "questions",
+            "quizId", "topic", "difficulty", "questionCount", "createdAt", "error"
+    };
+    private static final String[] KEY_TABLE = new String[64];
+
+    static {
+        for (String key : CANONICAL_KEYS) {
+            int slot = keySlot(key.hashCode());
+            while (KEY_TABLE[slot] != null) {
+                slot = (slot + 1) & (KEY_TABLE.length - 1);
+            }
+            KEY_TABLE[slot] = key;
+        }
+    }
+
     private final String input;
     private int index;
 
@@ -27,6 +49,61 @@ public final class SimpleJsonParser {
         return value;
     }
 
+    /**
+     * Parses UTF-8 encoded JSON without decoding the whole input to UTF-16 first.
+     */
+    public static Object parse(byte[] json) throws JsonParseException {
+        return Utf8JsonParser.parse(json, 0, json.length);
+    }
+
+    /**
+     * Parses UTF-8 JSON straight from a stream, decoding it chunk by chunk as it arrives.
+     * The stream is not closed.
+     */
+    public static Object parse(InputStream json) throws IOException, JsonParseException {
+        JsonStreamReader reader = new JsonStreamReader(json);
+        Object value = readValue(reader);
+        if (reader.peek() != JsonStreamReader.Token.END_DOCUMENT) {
+            throw new JsonParseException("Unexpected characters after JSON content");
+        }
+        return value;
+    }
+
+    private static Object readValue(JsonStreamReader reader) throws IOException, JsonParseException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT: {
+                Map<String, Object> result = new LinkedHashMap<>();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName();
+                    result.put(key, readValue(reader));
+                }
+                reader.endObject();
+                return result;
+            }
+            case BEGIN_ARRAY: {
+                List<Object> result = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    result.add(readValue(reader));
+                }
+                reader.endArray();
+                return result;
+            }
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return reader.nextNumber();
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return null;
+            default:
+                throw new JsonParseException("Unexpected end of JSON input");
+        }
+    }
+
     private Object parseValue() throws JsonParseException {
         skipWhitespace();
         if (isAtEnd()) {
@@ -39,7 +116,7 @@ public final class SimpleJsonParser {
             case '[':
                 return parseArray();
             case '"':
-                return parseString();
+                return parseString(false);
             case 't':
                 expectLiteral("true");
                 return Boolean.TRUE;
@@ -66,7 +143,7 @@ public final class SimpleJsonParser {
         }
         do {
             skipWhitespace();
-            String key = parseString();
+            String key = parseString(true);
             skipWhitespace();
             expect(':');
             Object value = parseValue();
@@ -93,9 +170,26 @@ public final class SimpleJsonParser {
         return result;
     }
 
-    private String parseString() throws JsonParseException {
+    private String parseString(boolean key) throws JsonParseException {
         expect('"');
-        StringBuilder builder = new StringBuilder();
+        int start = index;
+        int end = start;
+        while (end < input.length()) {
+            char c = input.charAt(end);
+            if (c == '"' || c == '\\') {
+                break;
+            }
+            end++;
+        }
+        if (end < input.length() && input.charAt(end) == '"') {
+            // No escapes: slice the input directly instead of copying char by char.
+            index = end + 1;
+            String canonical = key ? canonicalKey(input, start, end - start) : null;
+            return canonical != null ? canonical : input.substring(start, end);
+        }
+        StringBuilder builder = new StringBuilder(end - start + 16);
+        builder.append(input, start, end);
+        index = end;
         while (!isAtEnd()) {
             char c = advance();
             if (c == '"') {
@@ -257,6 +351,74 @@ public final class SimpleJsonParser {
         return (c >= '0' && c <= '9') || c == '-';
     }
 
+    /**
+     * Returns the canonical instance for a well-known key, or {@code null} when the
+     * characters do not match one.
+     */
+    static String canonicalKey(String source, int start, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + source.charAt(start + i);
+        }
+        for (int slot = keySlot(hash); KEY_TABLE[slot] != null; slot = (slot + 1) & (KEY_TABLE.length - 1)) {
+            String candidate = KEY_TABLE[slot];
+            if (candidate.length() == length && source.regionMatches(start, candidate, 0, length)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    static String canonicalKey(char[] source, int start, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + source[start + i];
+        }
+        for (int slot = keySlot(hash); KEY_TABLE[slot] != null; slot = (slot + 1) & (KEY_TABLE.length - 1)) {
+            String candidate = KEY_TABLE[slot];
+            if (candidate.length() == length && matches(source, start, candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    static String canonicalKey(byte[] source, int start, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + (source[start + i] & 0xff);
+        }
+        for (int slot = keySlot(hash); KEY_TABLE[slot] != null; slot = (slot + 1) & (KEY_TABLE.length - 1)) {
+            String candidate = KEY_TABLE[slot];
+            if (candidate.length() == length && matches(source, start, candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(byte[] source, int start, String candidate) {
+        for (int i = 0; i < candidate.length(); i++) {
+            if (source[start + i] != candidate.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(char[] source, int start, String candidate) {
+        for (int i = 0; i < candidate.length(); i++) {
+            if (source[start + i] != candidate.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int keySlot(int hash) {
+        return (hash ^ (hash >>> 16)) & (KEY_TABLE.length - 1);
+    }
+
     private boolean isAtEnd() {
         return index >= input.length();
     }
@@ -0,0 +1,308 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Second engine behind {@link SimpleJsonParser} that works on raw UTF-8 bytes.
+ * Strings are located eight bytes at a time (SWAR) and decoded once, which avoids
+ * the full UTF-16 decode of the input that the String based parser requires.
+ * Produces the same Java primitives, Lists, and Maps as the String based parser.
+ */
+final class Utf8JsonParser {
+
+    private static final VarHandle LONG_VIEW =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long QUOTES = ONES * '"';
+    private static final long BACKSLASHES = ONES * '\\';
+
+    private final byte[] input;
+    private final int end;
+    private int index;
+
+    private Utf8JsonParser(byte[] input, int offset, int length) {
+        this.input = input;
+        this.index = offset;
+        this.end = offset + length;
+    }
+
+    static Object parse(byte[] json, int offset, int length) throws SimpleJsonParser.JsonParseException {
+        Utf8JsonParser parser = new Utf8JsonParser(json, offset, length);
+        Object value = parser.parseValue();
+        parser.skipWhitespace();
+        if (!parser.isAtEnd()) {
+            throw parser.error("Unexpected characters after JSON content");
+        }
+        return value;
+    }
+
+    /**
+     * Returns the index of the first '"' or '\\' in {@code [from, to)}, or {@code to}
+     * when neither occurs. Whole words are tested at once; the lowest flagged byte of
+     * the combined mask is always a true match.
+     */
+    static int findQuoteOrBackslash(byte[] bytes, int from, int to) {
+        int i = from;
+        while (i + Long.BYTES <= to) {
+            long word = (long) LONG_VIEW.get(bytes, i);
+            long mask = zeroBytes(word ^ QUOTES) | zeroBytes(word ^ BACKSLASHES);
+            if (mask != 0) {
+                return i + (Long.numberOfTrailingZeros(mask) >>> 3);
+            }
+            i += Long.BYTES;
+        }
+        while (i < to) {
+            byte b = bytes[i];
+            if (b == '"' || b == '\\') {
+                return i;
+            }
+            i++;
+        }
+        return to;
+    }
+
+    private static long zeroBytes(long word) {
+        return (word - ONES) & ~word & HIGH_BITS;
+    }
+
+    private Object parseValue() throws SimpleJsonParser.JsonParseException {
+        skipWhitespace();
+        if (isAtEnd()) {
+            throw error("Unexpected end of JSON input");
+        }
+        byte c = input[index];
+        switch (c) {
+            case '{':
+                return parseObject();
+            case '[':
+                return parseArray();
+            case '"':
+                return parseString(false);
+            case 't':
+                expectLiteral("true");
+                return Boolean.TRUE;
+            case 'f':
+                expectLiteral("false");
+                return Boolean.FALSE;
+            case 'n':
+                expectLiteral("null");
+                return null;
+            default:
+                if ((c >= '0' && c <= '9') || c == '-') {
+                    return parseNumber();
+                }
+                throw error("Unexpected character: " + (char) (c & 0xff));
+        }
+    }
+
+    private Map<String, Object> parseObject() throws SimpleJsonParser.JsonParseException {
+        expect('{');
+        Map<String, Object> result = new LinkedHashMap<>();
+        skipWhitespace();
+        if (match('}')) {
+            return result;
+        }
+        do {
+            skipWhitespace();
+            String key = parseString(true);
+            skipWhitespace();
+            expect(':');
+            Object value = parseValue();
+            result.put(key, value);
+            skipWhitespace();
+        } while (match(','));
+        expect('}');
+        return result;
+    }
+
+    private List<Object> parseArray() throws SimpleJsonParser.JsonParseException {
+        expect('[');
+        List<Object> result = new ArrayList<>();
+        skipWhitespace();
+        if (match(']')) {
+            return result;
+        }
+        do {
+            Object value = parseValue();
+            result.add(value);
+            skipWhitespace();
+        } while (match(','));
+        expect(']');
+        return result;
+    }
+
+    private String parseString(boolean key) throws SimpleJsonParser.JsonParseException {
+        expect('"');
+        int start = index;
+        int stop = findQuoteOrBackslash(input, start, end);
+        if (stop < end && input[stop] == '"') {
+            index = stop + 1;
+            String canonical = key ? SimpleJsonParser.canonicalKey(input, start, stop - start) : null;
+            return canonical != null ? canonical : new String(input, start, stop - start, StandardCharsets.UTF_8);
+        }
+        // Escapes are ASCII, so splitting at them never cuts a multi-byte sequence.
+        StringBuilder builder = new StringBuilder(stop - start + 16);
+        while (stop < end) {
+            builder.append(new String(input, start, stop - start, StandardCharsets.UTF_8));
+            index = stop + 1;
+            if (input[stop] == '"') {
+                return builder.toString();
+            }
+            builder.append(parseEscape());
+            start = index;
+            stop = findQuoteOrBackslash(input, start, end);
+        }
+        index = end;
+        throw error("Unterminated string literal");
+    }
+
+    private char parseEscape() throws SimpleJsonParser.JsonParseException {
+        if (isAtEnd()) {
+            throw error("Unterminated escape sequence in string");
+        }
+        byte escaped = input[index++];
+        switch (escaped) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) escaped;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u': {
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    if (isAtEnd()) {
+                        throw error("Incomplete unicode escape sequence");
+                    }
+                    char hex = (char) (input[index++] & 0xff);
+                    int digit = Character.digit(hex, 16);
+                    if (digit == -1) {
+                        throw error("Invalid hex digit in unicode escape: " + hex);
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            }
+            default:
+                throw error("Invalid escape sequence: \\" + (char) (escaped & 0xff));
+        }
+    }
+
+    private Number parseNumber() throws SimpleJsonParser.JsonParseException {
+        int start = index;
+        boolean negative = match('-');
+        if (peekIfExists() == '0') {
+            index++;
+        } else {
+            consumeDigits();
+        }
+        boolean isFractional = false;
+        if (match('.')) {
+            isFractional = true;
+            consumeDigits();
+        }
+        if (peekIfExists() == 'e' || peekIfExists() == 'E') {
+            isFractional = true;
+            index++;
+            if (peekIfExists() == '+' || peekIfExists() == '-') {
+                index++;
+            }
+            consumeDigits();
+        }
+        int digits = index - start - (negative ? 1 : 0);
+        if (!isFractional && digits <= 18) {
+            long value = 0;
+            for (int i = negative ? start + 1 : start; i < index; i++) {
+                value = value * 10 + (input[i] - '0');
+            }
+            value = negative ? -value : value;
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return (int) value;
+            }
+            return value;
+        }
+        String number = new String(input, start, index - start, StandardCharsets.ISO_8859_1);
+        try {
+            if (isFractional) {
+                return Double.parseDouble(number);
+            }
+            return Long.parseLong(number);
+        } catch (NumberFormatException ex) {
+            throw error("Invalid number: " + number);
+        }
+    }
+
+    private void consumeDigits() throws SimpleJsonParser.JsonParseException {
+        if (!isDigit(peekIfExists())) {
+            throw error("Expected digit");
+        }
+        while (!isAtEnd() && isDigit(input[index])) {
+            index++;
+        }
+    }
+
+    private void expect(char expected) throws SimpleJsonParser.JsonParseException {
+        if (isAtEnd() || input[index] != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+        index++;
+    }
+
+    private void expectLiteral(String literal) throws SimpleJsonParser.JsonParseException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (isAtEnd() || input[index] != literal.charAt(i)) {
+                throw error("Expected \"" + literal + "\"");
+            }
+            index++;
+        }
+    }
+
+    private boolean match(char expected) {
+        if (isAtEnd() || input[index] != expected) {
+            return false;
+        }
+        index++;
+        return true;
+    }
+
+    private int peekIfExists() {
+        return isAtEnd() ? -1 : input[index];
+    }
+
+    private void skipWhitespace() {
+        while (index < end) {
+            byte c = input[index];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                index++;
+            } else {
+                break;
+            }
+        }
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private boolean isAtEnd() {
+        return index >= end;
+    }
+
+    private SimpleJsonParser.JsonParseException error(String message) {
+        return new SimpleJsonParser.JsonParseException(message + " at position " + index);
+    }
+}
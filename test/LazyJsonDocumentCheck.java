@@ -0,0 +1,143 @@
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Differential check for {@link LazyJsonDocument}: navigating the tape must reach the
+ * same values the eager {@link SimpleJsonParser} builds, and both must reject the same
+ * malformed input. Run with {@code java -cp out LazyJsonDocumentCheck}; exits non-zero
+ * on the first mismatch.
+ */
+public final class LazyJsonDocumentCheck {
+
+    private static final String[] FIXED_DOCUMENTS = {
+            "{}",
+            "[]",
+            "\"\"",
+            "0",
+            "{\"quiz\":{\"title\":\"Planets\",\"questions\":[{\"prompt\":\"Largest?\",\"options\":[\"Mars\",\"Jupiter\"],"
+                    + "\"answerIndex\":1}],\"meta\":null}}",
+            "[0,-1,2147483648,1.5,-2.5e-3,true,false,null]",
+            "{\"esc\\\"aped\":\"\\u00e9\\n\\ud83d\\ude00\",\"clé\":\"中\",\"😀\":[]}",
+            "  [ [ [ ] ] , { } ]  ",
+    };
+
+    private static final String[] MALFORMED_DOCUMENTS = {
+            "",
+            "{",
+            "{\"a\":}",
+            "[1,]",
+            "\"bad \\q escape\"",
+            "\"unterminated",
+            "{} {}",
+            "nul",
+    };
+
+    private LazyJsonDocumentCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int checked = 0;
+        for (String document : FIXED_DOCUMENTS) {
+            assertSameTree(document);
+            checked++;
+        }
+        for (String document : MALFORMED_DOCUMENTS) {
+            assertBothReject(document);
+            checked++;
+        }
+        checked += checkLookups();
+        Random random = new Random(5);
+        for (int round = 0; round < 2_000; round++) {
+            assertSameTree(RandomJson.value(random, 0));
+            checked++;
+        }
+        System.out.println("LazyJsonDocumentCheck: " + checked + " checks passed");
+    }
+
+    private static int checkLookups() throws Exception {
+        LazyJsonDocument.Node root = parse("{\"dup\":1,\"list\":[\"a\"],\"dup\":2}").root();
+        expect(Integer.valueOf(2), root.get("dup").asNumber(), "last duplicate key wins");
+        expect(null, root.get("missing"), "absent key");
+        expect(null, root.get("list").at(1), "index past the end");
+        expect(null, root.get("list").at(-1), "negative index");
+        expect(null, root.at(0), "index into an object");
+        expect(null, root.get("list").get("a"), "key lookup on an array");
+        expect(null, root.get("dup").asString(), "number read as string");
+        return 7;
+    }
+
+    private static void assertSameTree(String document) throws Exception {
+        Object expected = SimpleJsonParser.parse(document);
+        LazyJsonDocument.Node root = parse(document).root();
+        compare(expected, root, "$");
+        expect(expected, root.materialize(), "materialized " + document);
+    }
+
+    private static void compare(Object expected, LazyJsonDocument.Node node, String path) {
+        if (expected instanceof Map) {
+            Map<?, ?> members = (Map<?, ?>) expected;
+            expect(LazyJsonDocument.OBJECT, node.kind(), path + " kind");
+            expect(members.size(), node.size(), path + " size");
+            for (Map.Entry<?, ?> member : members.entrySet()) {
+                String key = (String) member.getKey();
+                LazyJsonDocument.Node child = node.get(key);
+                if (child == null) {
+                    throw new AssertionError("Missing member " + path + "." + key);
+                }
+                compare(member.getValue(), child, path + "." + key);
+            }
+        } else if (expected instanceof List) {
+            List<?> elements = (List<?>) expected;
+            expect(LazyJsonDocument.ARRAY, node.kind(), path + " kind");
+            expect(elements.size(), node.size(), path + " size");
+            for (int i = 0; i < elements.size(); i++) {
+                compare(elements.get(i), node.at(i), path + "[" + i + "]");
+            }
+        } else if (expected instanceof String) {
+            expect(LazyJsonDocument.STRING, node.kind(), path + " kind");
+            expect(expected, node.asString(), path);
+        } else if (expected instanceof Number) {
+            expect(LazyJsonDocument.NUMBER, node.kind(), path + " kind");
+            expect(expected, node.asNumber(), path);
+        } else if (expected == null) {
+            expect(LazyJsonDocument.NULL, node.kind(), path + " kind");
+        } else {
+            expect((Boolean) expected ? LazyJsonDocument.TRUE : LazyJsonDocument.FALSE, node.kind(), path + " kind");
+        }
+        expect(expected, node.materialize(), path + " materialized");
+    }
+
+    private static void assertBothReject(String document) {
+        boolean eagerRejected;
+        try {
+            SimpleJsonParser.parse(document);
+            eagerRejected = false;
+        } catch (SimpleJsonParser.JsonParseException ex) {
+            eagerRejected = true;
+        }
+        boolean lazyRejected;
+        try {
+            parse(document);
+            lazyRejected = false;
+        } catch (SimpleJsonParser.JsonParseException ex) {
+            lazyRejected = true;
+        }
+        if (!eagerRejected || !lazyRejected) {
+            throw new AssertionError("Malformed input accepted: " + document
+                    + " (eager rejected: " + eagerRejected + ", lazy rejected: " + lazyRejected + ")");
+        }
+    }
+
+    private static LazyJsonDocument parse(String document) throws SimpleJsonParser.JsonParseException {
+        return LazyJsonDocument.parse(document.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void expect(Object expected, Object actual, String what) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.Random;
+
+/**
+ * Generates random, valid JSON text for the parser checks. Strings mix ASCII, raw
+ * multibyte characters and every escape form, so their quotes and backslashes land at
+ * arbitrary byte offsets.
+ */
+final class RandomJson {
+
+    private static final String[] PIECES = {
+            "a", "b", "z", " ", "0", "é", "ß", "中", "文", "😀", "🎉",
+            "\\\"", "\\\\", "\\/", "\\b", "\\f", "\\n", "\\r", "\\t",
+            "\\u0041", "\\u00e9", "\\u4e2d", "\\ud83d\\ude00",
+    };
+    private static final String[] NUMBERS = {
+            "0", "-0", "7", "-42", "2147483647", "-2147483648", "2147483648", "9223372036854775807",
+            "0.5", "-3.25", "1e3", "6.02E+23", "1.5e-7",
+    };
+    private static final int MAX_DEPTH = 5;
+
+    private RandomJson() {
+    }
+
+    static String value(Random random, int depth) {
+        int kind = random.nextInt(depth >= MAX_DEPTH ? 5 : 7);
+        switch (kind) {
+            case 0:
+                return string(random);
+            case 1:
+                return NUMBERS[random.nextInt(NUMBERS.length)];
+            case 2:
+                return random.nextBoolean() ? "true" : "false";
+            case 3:
+                return "null";
+            case 4:
+                return string(random);
+            case 5:
+                return array(random, depth);
+            default:
+                return object(random, depth);
+        }
+    }
+
+    private static String array(Random random, int depth) {
+        StringBuilder json = new StringBuilder("[");
+        int size = random.nextInt(6);
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(whitespace(random)).append(value(random, depth + 1)).append(whitespace(random));
+        }
+        return json.append(']').toString();
+    }
+
+    private static String object(Random random, int depth) {
+        StringBuilder json = new StringBuilder("{");
+        int size = random.nextInt(6);
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            // A numeric suffix keeps keys unique, so documents have no duplicate members.
+            String key = string(random);
+            key = key.substring(0, key.length() - 1) + "#" + i + "\"";
+            json.append(whitespace(random)).append(key).append(whitespace(random)).append(':')
+                    .append(whitespace(random)).append(value(random, depth + 1));
+        }
+        return json.append('}').toString();
+    }
+
+    private static String string(Random random) {
+        StringBuilder json = new StringBuilder("\"");
+        int length = random.nextInt(24);
+        for (int i = 0; i < length; i++) {
+            json.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        return json.append('"').toString();
+    }
+
+    private static String whitespace(Random random) {
+        return random.nextInt(4) == 0 ? " \n\t".substring(random.nextInt(3)) : "";
+    }
+}
@@ -0,0 +1,156 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Conformance check for the byte-level {@link Utf8JsonParser}: every document must
+ * parse to exactly what the String based {@link SimpleJsonParser} produces, and both
+ * must reject the same malformed input. Run with
+ * {@code java -cp out Utf8JsonParserCheck} after compiling {@code src} and {@code test}
+ * together; exits non-zero on the first mismatch.
+ */
+public final class Utf8JsonParserCheck {
+
+    private static final String[] FIXED_DOCUMENTS = {
+            "{}",
+            "[]",
+            "\"\"",
+            "{\"a\":1,\"b\":[true,false,null],\"c\":{\"d\":\"e\"}}",
+            "[0,-1,2147483647,2147483648,-9223372036854775808,1.5,-2.5e-3,1E10]",
+            "\"\\\"\\\\\\/\\b\\f\\n\\r\\t\"",
+            "\"\\u00e9\\u4e2d\\ud83d\\ude00\\u0000\"",
+            "\"é中😀 mixed \\u00e9 with raw é\"",
+            "{\"clé\":\"valeur\",\"键\":\"值\",\"😀\":\"emoji key\"}",
+            "  \n\t[ 1 , \"two\" , { \"three\" : 3 } ]  \r\n",
+            "{\"dup\":1,\"dup\":2}",
+    };
+
+    private static final String[] MALFORMED_DOCUMENTS = {
+            "",
+            "\"unterminated",
+            "\"bad escape \\x\"",
+            "\"short unicode \\u12\"",
+            "{\"a\" 1}",
+            "[1,2",
+            "[1] trailing",
+            "tru",
+            "[-]",
+    };
+
+    private Utf8JsonParserCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int checked = 0;
+        for (String document : FIXED_DOCUMENTS) {
+            assertSameResult(document);
+            checked++;
+        }
+        for (String document : MALFORMED_DOCUMENTS) {
+            assertBothReject(document);
+            checked++;
+        }
+        checked += checkWordBoundaries();
+        checked += checkFindQuoteOrBackslash();
+        checked += checkRandomDocuments(new Random(4));
+        System.out.println("Utf8JsonParserCheck: " + checked + " checks passed");
+    }
+
+    /**
+     * Puts a quote, an escaped quote, a backslash and a multibyte character at every
+     * offset of the first few eight-byte words, so the SWAR scan and its byte-wise tail
+     * both meet them.
+     */
+    private static int checkWordBoundaries() throws Exception {
+        String[] specials = {"\\\"", "\\\\", "\\n", "\\u0041", "é", "中", "😀"};
+        int checked = 0;
+        for (int padding = 0; padding < 24; padding++) {
+            String prefix = "x".repeat(padding);
+            assertSameResult("\"" + prefix + "\"");
+            assertSameResult("{\"" + prefix + "\":\"" + prefix + "\"}");
+            checked += 2;
+            for (String special : specials) {
+                for (int suffix = 0; suffix < 10; suffix++) {
+                    assertSameResult("\"" + prefix + special + "y".repeat(suffix) + "\"");
+                    checked++;
+                }
+            }
+        }
+        return checked;
+    }
+
+    private static int checkFindQuoteOrBackslash() {
+        Random random = new Random(42);
+        byte[] alphabet = "ab\"\\\u00ff\u0080".getBytes(StandardCharsets.ISO_8859_1);
+        int checked = 0;
+        for (int round = 0; round < 20_000; round++) {
+            byte[] bytes = new byte[random.nextInt(40)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = random.nextInt(8) == 0 ? alphabet[random.nextInt(alphabet.length)] : (byte) 'a';
+            }
+            int from = bytes.length == 0 ? 0 : random.nextInt(bytes.length + 1);
+            int to = from + random.nextInt(bytes.length - from + 1);
+            int expected = to;
+            for (int i = from; i < to; i++) {
+                if (bytes[i] == '"' || bytes[i] == '\\') {
+                    expected = i;
+                    break;
+                }
+            }
+            int actual = Utf8JsonParser.findQuoteOrBackslash(bytes, from, to);
+            if (actual != expected) {
+                throw new AssertionError("findQuoteOrBackslash(" + from + ", " + to + ") was " + actual
+                        + ", expected " + expected + " in " + new String(bytes, StandardCharsets.ISO_8859_1));
+            }
+            checked++;
+        }
+        return checked;
+    }
+
+    private static int checkRandomDocuments(Random random) throws Exception {
+        for (int round = 0; round < 2_000; round++) {
+            assertSameResult(RandomJson.value(random, 0));
+        }
+        return 2_000;
+    }
+
+    static void assertSameResult(String document) throws Exception {
+        Object expected = SimpleJsonParser.parse(document);
+        byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+        Object actual = Utf8JsonParser.parse(bytes, 0, bytes.length);
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError("Parsers disagree on " + document + ": " + expected + " vs " + actual);
+        }
+        // The same document embedded in a larger buffer must parse identically.
+        byte[] padded = ("  " + document + "  ").getBytes(StandardCharsets.UTF_8);
+        byte[] embedded = new byte[padded.length + 6];
+        System.arraycopy(padded, 0, embedded, 3, padded.length);
+        Object fromSlice = Utf8JsonParser.parse(embedded, 3, padded.length);
+        if (!Objects.equals(expected, fromSlice)) {
+            throw new AssertionError("Offset parse differs for " + document + ": " + fromSlice);
+        }
+    }
+
+    private static void assertBothReject(String document) {
+        boolean stringRejected = rejects(() -> SimpleJsonParser.parse(document));
+        byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+        boolean bytesRejected = rejects(() -> Utf8JsonParser.parse(bytes, 0, bytes.length));
+        if (!stringRejected || !bytesRejected) {
+            throw new AssertionError("Malformed input accepted: " + document
+                    + " (string parser rejected: " + stringRejected + ", byte parser rejected: " + bytesRejected + ")");
+        }
+    }
+
+    private static boolean rejects(Parse parse) {
+        try {
+            parse.run();
+            return false;
+        } catch (SimpleJsonParser.JsonParseException ex) {
+            return true;
+        }
+    }
+
+    private interface Parse {
+        void run() throws SimpleJsonParser.JsonParseException;
+    }
+}